@@ -21,20 +21,32 @@ package com.hippo.android.gallery.demo;
  */
 
 import android.app.Application;
-import android.util.DisplayMetrics;
 import com.github.anrwatchdog.ANRWatchDog;
+import com.hippo.android.gallery.GalleryTrace;
+import com.hippo.android.gallery.MemoryPressureCoordinator;
+import com.hippo.android.gallery.drawable.TextureSizeProbe;
 import com.hippo.android.gallery.drawable.TiledDrawable;
 
 public class GalleryApp extends Application {
 
+  private final MemoryPressureCoordinator memoryPressureCoordinator =
+      new MemoryPressureCoordinator();
+
   @Override
   public void onCreate() {
     super.onCreate();
 
     new ANRWatchDog().start();
 
-    DisplayMetrics metrics = getResources().getDisplayMetrics();
-    int maxTextureSize = Math.max(metrics.widthPixels, metrics.heightPixels);
-    TiledDrawable.setMaxTextureSize(maxTextureSize);
+    GalleryTrace.setEnabled(BuildConfig.DEBUG);
+
+    TextureSizeProbe.configure(this);
+
+    memoryPressureCoordinator.register(TiledDrawable::trimMemory);
+    registerComponentCallbacks(memoryPressureCoordinator);
+  }
+
+  public MemoryPressureCoordinator getMemoryPressureCoordinator() {
+    return memoryPressureCoordinator;
   }
 }
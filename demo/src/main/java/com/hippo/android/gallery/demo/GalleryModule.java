@@ -29,6 +29,8 @@ import com.bumptech.glide.annotation.GlideModule;
 import com.bumptech.glide.module.AppGlideModule;
 import com.hippo.android.gallery.drawable.TiledDrawable;
 import com.hippo.gallery.integration.glide.ByteBufferTiledDrawableDecoder;
+import com.hippo.gallery.integration.glide.MemoryTilingPolicy;
+import com.hippo.gallery.integration.glide.PreviewStrategies;
 import com.hippo.gallery.integration.glide.SkiaImageRegionDecoderFactory;
 import java.nio.ByteBuffer;
 import java.util.concurrent.Executor;
@@ -42,6 +44,7 @@ public class GalleryModule extends AppGlideModule {
     SkiaImageRegionDecoderFactory factory = new SkiaImageRegionDecoderFactory();
     Executor executor = AsyncTask.THREAD_POOL_EXECUTOR;
     registry.prepend(ByteBuffer.class, TiledDrawable.class,
-        new ByteBufferTiledDrawableDecoder(factory, executor));
+        new ByteBufferTiledDrawableDecoder(factory, PreviewStrategies.AUTO,
+            new MemoryTilingPolicy(context), executor));
   }
 }
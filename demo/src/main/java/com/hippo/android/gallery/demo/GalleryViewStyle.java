@@ -133,6 +133,8 @@ public class GalleryViewStyle {
         slm = (ScrollLayoutManager) lm;
       } else {
         slm = new ScrollLayoutManager();
+        slm.setMaxScale(4.0f);
+        slm.setMatrixScaleEnabled(true);
       }
 
       switch (scrollLayout) {
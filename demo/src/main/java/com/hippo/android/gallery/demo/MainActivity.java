@@ -17,6 +17,8 @@
 package com.hippo.android.gallery.demo;
 
 import android.content.Context;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
@@ -30,23 +32,31 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.TextView;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
 import com.bumptech.glide.request.RequestOptions;
 import com.hippo.android.gallery.GalleryAdapter;
 import com.hippo.android.gallery.GalleryGestureHandler;
 import com.hippo.android.gallery.GalleryPage;
 import com.hippo.android.gallery.GalleryView;
 import com.hippo.android.gallery.ScrollLayoutManager;
+import com.hippo.android.gallery.drawable.AccurateDrawable;
 import com.hippo.android.gallery.drawable.CutAccurateDrawable;
 import com.hippo.android.gallery.drawable.CutDrawable;
 import com.hippo.android.gallery.drawable.TiledDrawable;
+import com.hippo.android.gallery.intf.Accurate;
 import com.hippo.android.gesture.GestureRecognizer;
 import com.hippo.gallery.integration.glide.ByteBufferTiledDrawableDecoder;
+import com.hippo.gallery.integration.glide.MemoryTilingPolicy;
+import com.hippo.gallery.integration.glide.TilingPolicies;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
 
+  private static final int LIGHT_BIND_VELOCITY_DP = 3000;
+  private static final int DEFER_TILE_VELOCITY_DP = 1000;
+
   private static final String[] IMAGE_URLS = {
       "http://upload.wikimedia.org/wikipedia/commons/thumb/1/12/Flowers_blooming_outside_Dunvegan_Castle_during_summer.png/398px-Flowers_blooming_outside_Dunvegan_Castle_during_summer.png",
       "http://www.gstatic.com/webp/gallery/1.jpg",
@@ -72,11 +82,22 @@ public class MainActivity extends AppCompatActivity {
     view.setAdapter(adapter);
     view.setAfterLayoutListener(adapter);
     view.setGestureHandler(new GalleryGestureHandler());
+    view.setLightBindVelocity(Utils.dp2pix(this, LIGHT_BIND_VELOCITY_DP));
+    view.setDeferTileVelocity(Utils.dp2pix(this, DEFER_TILE_VELOCITY_DP));
+    view.setPageLayersEnabled(true);
     view.setOverScrollMode(View.OVER_SCROLL_ALWAYS);
     GestureRecognizer gestureRecognizer = view.getGestureRecognizer();
     gestureRecognizer.setScaleEnabled(true);
 
     style.apply(view);
+
+    ((GalleryApp) getApplication()).getMemoryPressureCoordinator().register(view);
+  }
+
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    ((GalleryApp) getApplication()).getMemoryPressureCoordinator().unregister(view);
   }
 
   @Override
@@ -107,12 +128,16 @@ public class MainActivity extends AppCompatActivity {
 
     private Context context;
     private LayoutInflater inflater;
+    // Samples images which are much larger than the display
+    private DownsampleStrategy downsampleStrategy;
 
     private List<Operation> pendingOperations = new LinkedList<>();
 
     public Adapter(LayoutInflater inflater) {
       this.context = inflater.getContext();
       this.inflater = inflater;
+      this.downsampleStrategy =
+          TilingPolicies.asDownsampleStrategy(new MemoryTilingPolicy(context));
       for (String url : IMAGE_URLS) {
         items.add(new TextItem(url));
         items.add(new ImageItem(url, ImageItem.WHOLE));
@@ -148,31 +173,54 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     public void onBindPage(GalleryPage page) {
+      onBindPage(page, BIND_LEVEL_FULL);
+    }
+
+    @Override
+    public void onBindPage(GalleryPage page, int level) {
       Object item = items.get(page.getIndex());
 
       if (item instanceof ImageItem) {
-        ImageItem imageItem = (ImageItem) item;
-
-        DrawableView imageView = page.view.findViewById(R.id.image);
-
-        RequestOptions options = new RequestOptions()
-            .dontTransform()
-            .override(Target.SIZE_ORIGINAL)
-            .placeholder(AppCompatResources.getDrawable(context, R.drawable.ic_image_black_24dp))
-            .error(AppCompatResources.getDrawable(context, R.drawable.ic_broken_image_black_24dp))
-            .set(ByteBufferTiledDrawableDecoder.ENABLE, true);
-
-        GlideApp.with(inflater.getContext())
-            .asDrawable()
-            .load(imageItem.url)
-            .apply(options)
-            .into(new Target(imageView));
+        if (level == BIND_LEVEL_FULL) {
+          loadImage(page, (ImageItem) item);
+        } else {
+          // The page is flying past, don't start loading
+          DrawableView imageView = page.view.findViewById(R.id.image);
+          GlideApp.with(context).clear(imageView);
+          imageView.setDrawable(AppCompatResources.getDrawable(context, R.drawable.ic_image_black_24dp));
+        }
       } else {
         TextView textView = page.view.findViewById(R.id.text);
         textView.setText(((TextItem) item).text);
       }
     }
 
+    @Override
+    public void onUpgradePage(GalleryPage page) {
+      Object item = items.get(page.getIndex());
+      if (item instanceof ImageItem) {
+        loadImage(page, (ImageItem) item);
+      }
+    }
+
+    private void loadImage(GalleryPage page, ImageItem imageItem) {
+      DrawableView imageView = page.view.findViewById(R.id.image);
+
+      RequestOptions options = new RequestOptions()
+          .dontTransform()
+          .override(Target.SIZE_ORIGINAL)
+          .downsample(downsampleStrategy)
+          .placeholder(AppCompatResources.getDrawable(context, R.drawable.ic_image_black_24dp))
+          .error(AppCompatResources.getDrawable(context, R.drawable.ic_broken_image_black_24dp))
+          .set(ByteBufferTiledDrawableDecoder.ENABLE, true);
+
+      GlideApp.with(inflater.getContext())
+          .asDrawable()
+          .load(imageItem.url)
+          .apply(options)
+          .into(new Target(imageView));
+    }
+
     @Override
     public void onUnbindPage(GalleryPage page) {}
 
@@ -223,6 +271,11 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     public void onAfterLayout() {
+      if (pendingOperations.isEmpty()) {
+        return;
+      }
+
+      beginBatchedUpdates();
       for (Operation operation : pendingOperations) {
         if (operation.mode == Operation.ADD) {
           items.add(operation.index, operation.item);
@@ -232,6 +285,7 @@ public class MainActivity extends AppCompatActivity {
           notifyPageRemoved(operation.index);
         }
       }
+      endBatchedUpdates();
 
       pendingOperations.clear();
     }
@@ -266,6 +320,11 @@ public class MainActivity extends AppCompatActivity {
           return;
         }
 
+        if (resource instanceof TiledDrawable) {
+          // Decode tiles in the executor of the GalleryView
+          ((TiledDrawable) resource).setExecutor(getGalleryView().getTileExecutor());
+        }
+
         ImageItem item = (ImageItem) items.get(index);
         boolean needToBeCut = needToBeCut(resource);
         boolean hasBeenCut = item.part != ImageItem.WHOLE;
@@ -285,9 +344,26 @@ public class MainActivity extends AppCompatActivity {
           }
         }
 
-        if (item.part != ImageItem.WHOLE) {
+        if (resource instanceof BitmapDrawable) {
+          // Only draw the visible region of the bitmap
+          AccurateDrawable accurateDrawable = new AccurateDrawable();
+          accurateDrawable.setDrawable(resource);
+          resource = accurateDrawable;
+        }
+
+        if (item.part != ImageItem.WHOLE && resource instanceof TiledDrawable) {
+          // Both halves share the decoder, only tiles of the visible half are decoded
+          TiledDrawable tiledDrawable = (TiledDrawable) resource;
+          int width = tiledDrawable.getIntrinsicWidth();
+          int height = tiledDrawable.getIntrinsicHeight();
+          if (item.part == ImageItem.LEFT) {
+            tiledDrawable.setRegion(new Rect(0, 0, width / 2, height));
+          } else if (item.part == ImageItem.RIGHT) {
+            tiledDrawable.setRegion(new Rect(width / 2, 0, width, height));
+          }
+        } else if (item.part != ImageItem.WHOLE) {
           CutDrawable cutDrawable;
-          if (resource instanceof TiledDrawable) {
+          if (resource instanceof Accurate) {
             cutDrawable = new CutAccurateDrawable();
           } else {
             cutDrawable = new CutDrawable();
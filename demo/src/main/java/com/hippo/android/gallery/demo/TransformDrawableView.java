@@ -21,7 +21,9 @@ package com.hippo.android.gallery.demo;
  */
 
 import android.content.Context;
+import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
 import com.hippo.android.gallery.drawable.TransformDrawable;
@@ -72,4 +74,34 @@ public class TransformDrawableView extends DrawableView implements Transformable
   public void setStartPosition(int startPosition) {
     transformDrawable.setStartPosition(startPosition);
   }
+
+  @Override
+  public void setContentRotation(int rotation) {
+    transformDrawable.setContentRotation(rotation);
+  }
+
+  @Override
+  public int getContentRotation() {
+    return transformDrawable.getContentRotation();
+  }
+
+  @Override
+  public void animateScale(float x, float y, float scale) {
+    transformDrawable.animateScale(x, y, scale);
+  }
+
+  @Override
+  public void animateNextScaleLevel(float x, float y) {
+    transformDrawable.animateNextScaleLevel(x, y);
+  }
+
+  @Override
+  public void animateScaleToRect(@NonNull RectF rect) {
+    transformDrawable.animateScaleToRect(rect);
+  }
+
+  @Override
+  public void cancelAnimations() {
+    transformDrawable.cancelAnimations();
+  }
 }
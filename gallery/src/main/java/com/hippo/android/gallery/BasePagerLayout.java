@@ -45,7 +45,9 @@ public abstract class BasePagerLayout implements PagerLayoutManager.PagerLayout
   }
 
   private void measure(View view) {
+    GalleryTrace.beginSection("GalleryPage.measure");
     view.measure(widthMeasureSpec, heightMeasureSpec);
+    GalleryTrace.endSection();
   }
 
   private void layout(View view, int left, int top, int right, int bottom) {
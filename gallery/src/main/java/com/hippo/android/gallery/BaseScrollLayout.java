@@ -75,7 +75,9 @@ public abstract class BaseScrollLayout implements ScrollLayoutManager.ScrollLayo
     ViewGroup.LayoutParams lp = view.getLayoutParams();
     int widthMeasureSpec = getPageMeasureSpec((int) (width * scale), lp.width, widthFixed);
     int heightMeasureSpec = getPageMeasureSpec((int) (height * scale), lp.height, heightFixed);
+    GalleryTrace.beginSection("GalleryPage.measure");
     view.measure(widthMeasureSpec, heightMeasureSpec);
+    GalleryTrace.endSection();
   }
 
   protected void layout(View view, int left, int top, int right, int bottom) {
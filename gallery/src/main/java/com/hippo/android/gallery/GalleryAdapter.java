@@ -20,22 +20,49 @@ package com.hippo.android.gallery;
  * Created by Hippo on 2017/12/31.
  */
 
+import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Adapter handles Page creation, destroying, binding and unbinding.
  */
 public abstract class GalleryAdapter {
 
+  @IntDef({BIND_LEVEL_LIGHT, BIND_LEVEL_FULL})
+  @Retention(RetentionPolicy.SOURCE)
+  public @interface BindLevel {}
+
+  /**
+   * The page is only flying past. Expensive work, like image loading, could be skipped.
+   * The page will be upgraded in {@link #onUpgradePage(GalleryPage)} if it stays.
+   */
+  public static final int BIND_LEVEL_LIGHT = 0;
+
+  /**
+   * The page is expected to stay in screen. Bind it completely.
+   */
+  public static final int BIND_LEVEL_FULL = 1;
+
   @Nullable
   private GalleryView view;
 
+  // Notifications in the current batch
+  private List<UpdateOp> pendingOps = new ArrayList<>();
+  private int batchDepth;
+
   void attach(GalleryView view) {
     if (this.view != null) {
       throw new IllegalStateException("This Adapter is already attached to a GalleryView.");
     }
     this.view = view;
+    // The new GalleryView has no page to update
+    pendingOps.clear();
   }
 
   void detach() {
@@ -51,8 +78,10 @@ public abstract class GalleryAdapter {
   }
 
   GalleryPage createPage(GalleryView parent, int type) {
+    GalleryTrace.beginSection("GalleryAdapter.createPage");
     GalleryPage page = onCreatePage(parent, type);
     page.type = type;
+    GalleryTrace.endSection();
     return page;
   }
 
@@ -75,7 +104,7 @@ public abstract class GalleryAdapter {
    */
   public abstract void onDestroyPage(GalleryPage page);
 
-  void bindPage(GalleryPage page, int index) {
+  void bindPage(GalleryPage page, int index, @BindLevel int level) {
 
     if (BuildConfig.DEBUG) {
       if (page.bound) {
@@ -85,7 +114,10 @@ public abstract class GalleryAdapter {
     }
 
     page.index = index;
-    onBindPage(page);
+    page.bindLevel = level;
+    GalleryTrace.beginSection("GalleryAdapter.bindPage");
+    onBindPage(page, level);
+    GalleryTrace.endSection();
   }
 
   /**
@@ -98,6 +130,38 @@ public abstract class GalleryAdapter {
    */
   public abstract void onBindPage(GalleryPage page);
 
+  /**
+   * Binds the Page with a bind level.
+   *
+   * The default implementation ignores the bind level and calls
+   * {@link #onBindPage(GalleryPage)}. Override it to skip expensive work
+   * for {@link #BIND_LEVEL_LIGHT}.
+   *
+   * @param level one of {@link #BIND_LEVEL_LIGHT} or {@link #BIND_LEVEL_FULL}
+   */
+  public void onBindPage(GalleryPage page, @BindLevel int level) {
+    onBindPage(page);
+  }
+
+  void upgradePage(GalleryPage page) {
+    if (page.bindLevel != BIND_LEVEL_FULL) {
+      page.bindLevel = BIND_LEVEL_FULL;
+      GalleryTrace.beginSection("GalleryAdapter.upgradePage");
+      onUpgradePage(page);
+      GalleryTrace.endSection();
+    }
+  }
+
+  /**
+   * Upgrades the Page which is bound with {@link #BIND_LEVEL_LIGHT}
+   * to {@link #BIND_LEVEL_FULL}. Do the work skipped in
+   * {@link #onBindPage(GalleryPage, int)}.
+   *
+   * The index of the Page is valid.
+   * The type of the Page is valid.
+   */
+  public void onUpgradePage(GalleryPage page) {}
+
   void unbindPage(GalleryPage page) {
 
     if (BuildConfig.DEBUG) {
@@ -107,7 +171,9 @@ public abstract class GalleryAdapter {
       page.bound = false;
     }
 
+    GalleryTrace.beginSection("GalleryAdapter.unbindPage");
     onUnbindPage(page);
+    GalleryTrace.endSection();
     page.index = GalleryView.INVALID_INDEX;
   }
 
@@ -133,21 +199,58 @@ public abstract class GalleryAdapter {
     return 0;
   }
 
+  /**
+   * Starts batching page notifications. Notifications are coalesced
+   * and applied in one pass in {@link #endBatchedUpdates()}.
+   *
+   * Batches could be nested, only the outermost
+   * {@link #endBatchedUpdates()} applies the notifications.
+   */
+  public final void beginBatchedUpdates() {
+    batchDepth++;
+  }
+
+  /**
+   * Ends batching page notifications started in {@link #beginBatchedUpdates()}.
+   *
+   * @throws IllegalStateException if no batch started,
+   *         or the outermost batch ends in layout
+   */
+  public final void endBatchedUpdates() {
+    if (batchDepth == 0) {
+      throw new IllegalStateException("Call endBatchedUpdates() without beginBatchedUpdates()");
+    }
+
+    if (--batchDepth == 0 && !pendingOps.isEmpty()) {
+      List<UpdateOp> ops = new ArrayList<>(pendingOps);
+      pendingOps.clear();
+      if (view != null) {
+        view.notifyPageUpdates(ops);
+      }
+    }
+  }
+
+  private void notifyPageUpdate(UpdateOp op) {
+    if (batchDepth > 0) {
+      UpdateOp.add(pendingOps, op);
+    } else if (view != null) {
+      view.notifyPageUpdates(Collections.singletonList(op));
+    }
+  }
+
   /**
    * Notifies the page with the specified index is changed.
    */
   public final void notifyPageChanged(int index) {
-    if (view != null) {
-      view.notifyPageRangeChanged(index, 1);
-    }
+    notifyPageRangeChanged(index, 1);
   }
 
   /**
    * Notifies the pages in the range are changed.
    */
   public final void notifyPageRangeChanged(int indexStart, int itemCount) {
-    if (view != null) {
-      view.notifyPageRangeChanged(indexStart, itemCount);
+    if (itemCount > 0) {
+      notifyPageUpdate(new UpdateOp(UpdateOp.CHANGE, indexStart, itemCount));
     }
   }
 
@@ -155,17 +258,15 @@ public abstract class GalleryAdapter {
    * Notifies a page is inserted to the index.
    */
   public final void notifyPageInserted(int index) {
-    if (view != null) {
-      view.notifyPageRangeInserted(index, 1);
-    }
+    notifyPageRangeInserted(index, 1);
   }
 
   /**
    * Notifies pages are inserted to the range.
    */
   public final void notifyPageRangeInserted(int indexStart, int itemCount) {
-    if (view != null) {
-      view.notifyPageRangeInserted(indexStart, itemCount);
+    if (itemCount > 0) {
+      notifyPageUpdate(new UpdateOp(UpdateOp.INSERT, indexStart, itemCount));
     }
   }
 
@@ -173,17 +274,15 @@ public abstract class GalleryAdapter {
    * Notifies the page with the specified index is removed.
    */
   public final void notifyPageRemoved(int index) {
-    if (view != null) {
-      view.notifyPageRangeRemoved(index, 1);
-    }
+    notifyPageRangeRemoved(index, 1);
   }
 
   /**
    * Notifies the pages in the range are removed.
    */
   public final void notifyPageRangeRemoved(int indexStart, int itemCount) {
-    if (view != null) {
-      view.notifyPageRangeRemoved(indexStart, itemCount);
+    if (itemCount > 0) {
+      notifyPageUpdate(new UpdateOp(UpdateOp.REMOVE, indexStart, itemCount));
     }
   }
 
@@ -191,8 +290,8 @@ public abstract class GalleryAdapter {
    * Notifies the page with the specified index is moved to another index.
    */
   public final void notifyPageMoved(int fromIndex, int toIndex) {
-    if (view != null) {
-      view.notifyPageMoved(fromIndex, toIndex);
+    if (fromIndex != toIndex) {
+      notifyPageUpdate(new UpdateOp(UpdateOp.MOVE, fromIndex, toIndex));
     }
   }
 
@@ -200,8 +299,6 @@ public abstract class GalleryAdapter {
    * Notifies all pages might be changed.
    */
   public final void notifyPageSetChanged() {
-    if (view != null) {
-      view.notifyPageSetChanged();
-    }
+    notifyPageUpdate(new UpdateOp(UpdateOp.SET_CHANGE, 0, 0));
   }
 }
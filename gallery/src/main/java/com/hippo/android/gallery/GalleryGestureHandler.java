@@ -32,6 +32,8 @@ import android.view.View;
 public class GalleryGestureHandler {
 
   private static final int MAX_OVER_SCROLL = 48;
+  // Pages are rotated by 90 degrees if rotation gestures reach it
+  private static final float ROTATION_THRESHOLD = 45.0f;
 
   @Nullable
   private GalleryView view;
@@ -42,6 +44,9 @@ public class GalleryGestureHandler {
   private float overScrollX;
   private float overScrollY;
 
+  // The angle of rotation gestures since the last rotation
+  private float rotationAngle;
+
   private float overScrollXAnimationFactor;
   private float overScrollYAnimationFactor;
   private static final FloatPropertyCompat<GalleryGestureHandler> OVER_SCROLL =
@@ -61,6 +66,11 @@ public class GalleryGestureHandler {
 
   public GalleryGestureHandler() {
     overScrollAnimation.getSpring().setDampingRatio(1.0f);
+    overScrollAnimation.addEndListener((animation, canceled, value, velocity) -> {
+      if (view != null) {
+        view.onAnimationEnd();
+      }
+    });
   }
 
   void attach(GalleryView view) {
@@ -77,6 +87,13 @@ public class GalleryGestureHandler {
     overScrollAnimation.skipToEnd();
   }
 
+  /*
+   * Returns {@code true} if the over scroll animation is running.
+   */
+  boolean isAnimating() {
+    return overScrollAnimation.isRunning();
+  }
+
   @Nullable
   private GalleryLayoutManager getLayoutManager() {
     if (view != null) {
@@ -97,6 +114,7 @@ public class GalleryGestureHandler {
       layoutManager.cancelAnimations();
     }
     overScrollAnimation.cancel();
+    rotationAngle = 0.0f;
   }
 
   private void startOverScrollAnimation() {
@@ -123,6 +141,8 @@ public class GalleryGestureHandler {
     GalleryLayoutManager layoutManager = getLayoutManager();
     if (layoutManager instanceof PagerLayoutManager) {
       ((PagerLayoutManager) layoutManager).startTurningAnimation();
+    } else if (layoutManager instanceof ScrollLayoutManager) {
+      ((ScrollLayoutManager) layoutManager).finishScale();
     }
 
     startOverScrollAnimation();
@@ -133,6 +153,8 @@ public class GalleryGestureHandler {
     GalleryLayoutManager layoutManager = getLayoutManager();
     if (layoutManager instanceof PagerLayoutManager) {
       ((PagerLayoutManager) layoutManager).startTurningAnimation();
+    } else if (layoutManager instanceof ScrollLayoutManager) {
+      ((ScrollLayoutManager) layoutManager).finishScale();
     }
 
     startOverScrollAnimation();
@@ -141,8 +163,18 @@ public class GalleryGestureHandler {
   @CallSuper
   public void onSingleTap(float x, float y) {}
 
+  /**
+   * Scales pages to the next scale level with an animation.
+   */
   @CallSuper
-  public void onDoubleTap(float x, float y) {}
+  public void onDoubleTap(float x, float y) {
+    GalleryLayoutManager layoutManager = getLayoutManager();
+    if (layoutManager instanceof PagerLayoutManager) {
+      ((PagerLayoutManager) layoutManager).animateNextScaleLevel(x, y);
+    } else if (layoutManager instanceof ScrollLayoutManager) {
+      ((ScrollLayoutManager) layoutManager).animateNextScaleLevel(x, y);
+    }
+  }
 
   @CallSuper
   public void onLongPress(float x, float y) {}
@@ -236,6 +268,19 @@ public class GalleryGestureHandler {
     }
   }
 
+  /**
+   * Rotates pages by 90 degrees once a rotation gesture reaches the threshold.
+   */
   @CallSuper
-  public void onRotate(float x, float y, float angle) {}
+  public void onRotate(float x, float y, float angle) {
+    rotationAngle += angle;
+    if (Math.abs(rotationAngle) >= ROTATION_THRESHOLD) {
+      int degrees = rotationAngle > 0.0f ? 90 : -90;
+      rotationAngle = 0.0f;
+      GalleryLayoutManager layoutManager = getLayoutManager();
+      if (layoutManager instanceof PagerLayoutManager) {
+        ((PagerLayoutManager) layoutManager).rotate(degrees);
+      }
+    }
+  }
 }
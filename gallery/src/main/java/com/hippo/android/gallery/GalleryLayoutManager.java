@@ -31,6 +31,9 @@ public abstract class GalleryLayoutManager {
   @Nullable
   private GalleryView view;
 
+  private int offscreenPagesAhead = 0;
+  private int offscreenPagesBehind = 0;
+
   void attach(GalleryView view) {
     if (this.view != null) {
       throw new IllegalStateException("This LayoutManager is already attached to a GalleryView.");
@@ -77,6 +80,76 @@ public abstract class GalleryLayoutManager {
    */
   protected abstract void layout(int width, int height);
 
+  /**
+   * Sets the count of offscreen pages to keep around the laid pages.
+   * Offscreen pages are bound but they are not measured, laid or drawn.
+   * It makes slow pages ready before they come into screen.
+   *
+   * Negative value is treated as {@code 0}.
+   *
+   * @param ahead the count of offscreen pages in reading direction
+   * @param behind the count of offscreen pages against reading direction
+   */
+  public void setOffscreenPageLimit(int ahead, int behind) {
+    ahead = Math.max(0, ahead);
+    behind = Math.max(0, behind);
+
+    if (offscreenPagesAhead != ahead || offscreenPagesBehind != behind) {
+      offscreenPagesAhead = ahead;
+      offscreenPagesBehind = behind;
+      requestLayout();
+    }
+  }
+
+  /**
+   * Returns the count of offscreen pages in reading direction.
+   */
+  public int getOffscreenPagesAhead() {
+    return offscreenPagesAhead;
+  }
+
+  /**
+   * Returns the count of offscreen pages against reading direction.
+   */
+  public int getOffscreenPagesBehind() {
+    return offscreenPagesBehind;
+  }
+
+  /**
+   * Pins offscreen pages around the laid pages.
+   * It should be called at the end of {@link #layout(int, int)}.
+   *
+   * @param first the index of the first laid page
+   * @param last the index of the last laid page
+   * @param forward {@code true} if the reading direction is from the first page to the last page
+   */
+  protected void pinOffscreenPages(GalleryView view, int first, int last, boolean forward) {
+    if (view.isOffscreenPagesTrimmed()) {
+      return;
+    }
+
+    int pageCount = view.getPageCount();
+    int next = forward ? offscreenPagesAhead : offscreenPagesBehind;
+    int previous = forward ? offscreenPagesBehind : offscreenPagesAhead;
+
+    // Pin the pages in reading direction first to start their binding work earlier
+    if (forward) {
+      for (int i = 1; i <= next && last + i < pageCount; i++) {
+        view.pinOffscreenPage(last + i);
+      }
+      for (int i = 1; i <= previous && first - i >= 0; i++) {
+        view.pinOffscreenPage(first - i);
+      }
+    } else {
+      for (int i = 1; i <= previous && first - i >= 0; i++) {
+        view.pinOffscreenPage(first - i);
+      }
+      for (int i = 1; i <= next && last + i < pageCount; i++) {
+        view.pinOffscreenPage(last + i);
+      }
+    }
+  }
+
   /**
    * Requests layout for the GalleryView attached to this LayoutManager.
    */
@@ -126,6 +199,30 @@ public abstract class GalleryLayoutManager {
    */
   public abstract void fling(float velocityX, float velocityY);
 
+  /**
+   * Returns the speed of the current fling which moves pages, in pixels per second.
+   * Returns {@code 0} if there is no such fling.
+   */
+  public float getFlingVelocity() {
+    return 0.0f;
+  }
+
+  /**
+   * Returns {@code true} if an animation of the LayoutManager is moving pages.
+   */
+  public boolean isAnimating() {
+    return false;
+  }
+
+  /*
+   * Subclasses call it when an animation moving pages ends.
+   */
+  void notifyAnimationEnd() {
+    if (view != null) {
+      view.onAnimationEnd();
+    }
+  }
+
   /**
    * Cancel all animations of the LayoutManager.
    */
@@ -46,6 +46,15 @@ public class GalleryPage {
    */
   boolean pinned = false;
 
+  // Offscreen pages are bound, but not measured, laid or drawn
+  boolean offscreen = false;
+
+  // True if the view has a hardware layer set by GalleryView
+  boolean layer = false;
+
+  @GalleryAdapter.BindLevel
+  int bindLevel = GalleryAdapter.BIND_LEVEL_FULL;
+
   // For debug
   boolean bound = false;
 
@@ -71,9 +80,26 @@ public class GalleryPage {
     return type;
   }
 
+  /**
+   * Returns {@code true} if this Page is pinned as an offscreen page.
+   * Offscreen pages are bound, but not measured, laid or drawn.
+   */
+  public boolean isOffscreen() {
+    return offscreen;
+  }
+
+  /**
+   * Returns the bind level of this Page.
+   * It's only meaningful when the page is bound.
+   */
+  @GalleryAdapter.BindLevel
+  public int getBindLevel() {
+    return bindLevel;
+  }
+
   @Override
   public String toString() {
     return "Page{" + Integer.toHexString(hashCode()) + " index=" + index + ", type=" + type +
-        ", pinned=" + pinned + ", bound=" + bound + "}";
+        ", pinned=" + pinned + ", offscreen=" + offscreen + ", bound=" + bound + "}";
   }
 }
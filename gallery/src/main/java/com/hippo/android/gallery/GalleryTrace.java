@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+import java.lang.reflect.Method;
+
+/**
+ * GalleryTrace writes trace sections of the gallery to the system trace,
+ * which could be viewed in systrace or Perfetto.
+ *
+ * It's disabled by default. Call {@link #setEnabled(boolean)} to enable it.
+ * It only works on Jelly Bean MR2 and above.
+ */
+public final class GalleryTrace {
+  private GalleryTrace() {}
+
+  private static final String LOG_TAG = "GalleryTrace";
+
+  // Trace.TRACE_TAG_APP, it's hidden
+  private static final long TRACE_TAG_APP = 1L << 12;
+
+  private static boolean enabled;
+
+  private static boolean asyncMethodsLoaded;
+  private static Method asyncTraceBegin;
+  private static Method asyncTraceEnd;
+
+  /**
+   * Enables or disables trace sections.
+   */
+  public static void setEnabled(boolean enabled) {
+    GalleryTrace.enabled = enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+  }
+
+  /**
+   * Returns true if trace sections are enabled.
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Begins a trace section in current thread.
+   * It must be ended by {@link #endSection()} in the same thread.
+   */
+  public static void beginSection(String name) {
+    if (enabled) {
+      Trace.beginSection(name);
+    }
+  }
+
+  /**
+   * Ends the last trace section in current thread.
+   */
+  public static void endSection() {
+    if (enabled) {
+      Trace.endSection();
+    }
+  }
+
+  /**
+   * Begins an async trace section. It could be ended in any thread
+   * by {@link #endAsyncSection(String, int)} with the same name and cookie.
+   */
+  public static void beginAsyncSection(String name, int cookie) {
+    if (enabled && loadAsyncMethods()) {
+      invoke(asyncTraceBegin, name, cookie);
+    }
+  }
+
+  /**
+   * Ends the async trace section.
+   */
+  public static void endAsyncSection(String name, int cookie) {
+    if (enabled && loadAsyncMethods()) {
+      invoke(asyncTraceEnd, name, cookie);
+    }
+  }
+
+  /*
+   * Async trace methods are hidden, get them via reflection.
+   */
+  private static synchronized boolean loadAsyncMethods() {
+    if (!asyncMethodsLoaded) {
+      asyncMethodsLoaded = true;
+      try {
+        asyncTraceBegin = Trace.class.getMethod(
+            "asyncTraceBegin", long.class, String.class, int.class);
+        asyncTraceEnd = Trace.class.getMethod(
+            "asyncTraceEnd", long.class, String.class, int.class);
+      } catch (Exception e) {
+        Log.w(LOG_TAG, "Can't get async trace methods", e);
+        asyncTraceBegin = null;
+        asyncTraceEnd = null;
+      }
+    }
+    return asyncTraceBegin != null;
+  }
+
+  private static void invoke(Method method, String name, int cookie) {
+    try {
+      method.invoke(null, TRACE_TAG_APP, name, cookie);
+    } catch (Exception e) {
+      Log.w(LOG_TAG, "Can't invoke " + method.getName(), e);
+    }
+  }
+}
@@ -23,15 +23,20 @@ package com.hippo.android.gallery;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.Canvas;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.SparseArray;
+import android.util.SparseIntArray;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import com.hippo.android.gallery.drawable.TileExecutor;
+import com.hippo.android.gallery.drawable.TiledDrawable;
 import com.hippo.android.gesture.GestureRecognizer;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -42,7 +47,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 
 /**
  * <p>
@@ -60,15 +64,13 @@ import java.util.Stack;
  * to set custom gesture handler.
  * </p>
  */
-public class GalleryView extends ViewGroup {
+public class GalleryView extends ViewGroup implements MemoryPressureCoordinator.Trimmable {
 
   private static final String LOG_TAG = "GalleryView";
 
   public static final int INVALID_INDEX = -1;
   public static final int INVALID_TYPE = -1;
 
-  private static final int MAX_PAGES_EACH_TYPE = 5;
-
   private GestureRecognizer gestureRecognizer;
 
   @Nullable
@@ -92,16 +94,60 @@ public class GalleryView extends ViewGroup {
   // They must be reused or removed in the next layout.
   private Set<GalleryPage> invalidPages = new HashSet<>();
 
-  // Page cache, key is page type
-  @SuppressLint("UseSparseArrays")
-  private Map<Integer, Stack<GalleryPage>> cache = new HashMap<>();
+  // The views of the offscreen pages in pages. They are not drawn.
+  private Set<View> offscreenViews = new HashSet<>();
+
+  // Unbound pages for reusing
+  private RecycledPagePool pagePool = new RecycledPagePool();
+  // True if pagePool is set by setRecycledPagePool()
+  private boolean sharedPagePool;
+
+  // Key is page type, value is the count of pages to prepare in pagePool
+  private SparseIntArray pagesToPrepare = new SparseIntArray();
+  private boolean prepareHandlerAdded;
 
   // Whether the GalleryView is in layout
   private boolean inLayout;
 
+  // Pages are bound lightly if the fling velocity is larger than it.
+  // Non-positive value disables light binding.
+  private float lightBindVelocity = 0.0f;
+
+  // Full resolution tiles are deferred while pages are moving faster than it.
+  // Non-positive value disables deferring.
+  private float deferTileVelocity = 0.0f;
+
+  // The bind level for the pages bound in current layout
+  @GalleryAdapter.BindLevel
+  private int bindLevel = GalleryAdapter.BIND_LEVEL_FULL;
+
   private float overScrollX = 0.0f;
   private float overScrollY = 0.0f;
 
+  // The transform applied to all children, screen = laid * contentScale + contentTranslate
+  private float contentScale = 1.0f;
+  private float contentTranslateX = 0.0f;
+  private float contentTranslateY = 0.0f;
+
+  // Pages are drawn into hardware layers while moving if it's true
+  private boolean pageLayersEnabled;
+  // Whether a pointer is down
+  private boolean touching;
+
+  // Decodes tiles of TiledDrawables in this GalleryView
+  private TileExecutor tileExecutor = new TileExecutor();
+
+  // Offscreen pages are not pinned if it's true, until the GalleryView is shown again
+  private boolean offscreenPagesTrimmed;
+
+  @Nullable
+  private PerformanceListener performanceListener;
+  // Page counts in current layout
+  private int boundPageCount;
+  private int unpinnedPageCount;
+  private int poolCreateCount;
+  private int poolReuseCount;
+
   public GalleryView(Context context) {
     super(context);
     init(context);
@@ -132,29 +178,48 @@ public class GalleryView extends ViewGroup {
   private void reset() {
     // Remove all views attached the GalleryView
     removeAllViews();
+    offscreenViews.clear();
 
     if (adapter != null) {
       // Unbind and destroy all attached valid page
       for (GalleryPage page : pages.values()) {
         adapter.unbindPage(page);
-        adapter.destroyPage(page);
+        releasePage(page);
       }
       pages.clear();
 
       // Unbind and destroy all attached invalid page
       for (GalleryPage page : invalidPages) {
         adapter.unbindPage(page);
-        adapter.destroyPage(page);
+        releasePage(page);
       }
       invalidPages.clear();
 
-      // Destroy all cached page
-      for (Stack<GalleryPage> stack : cache.values()) {
-        for (GalleryPage page : stack) {
-          adapter.destroyPage(page);
-        }
+      // Destroy all cached page, shared pool keeps them for other GalleryViews
+      if (!sharedPagePool) {
+        pagePool.clear(adapter);
       }
-      cache.clear();
+    }
+
+    // Stop preparing pages
+    pagesToPrepare.clear();
+    if (prepareHandlerAdded) {
+      prepareHandlerAdded = false;
+      Looper.myQueue().removeIdleHandler(prepareHandler);
+    }
+  }
+
+  /*
+   * Keeps the unbound page in shared pool, or destroys it.
+   */
+  private void releasePage(GalleryPage page) {
+    setPageLayer(page, false);
+    if (sharedPagePool) {
+      page.pinned = false;
+      page.offscreen = false;
+      pagePool.recycle(adapter, page);
+    } else {
+      adapter.destroyPage(page);
     }
   }
 
@@ -212,6 +277,7 @@ public class GalleryView extends ViewGroup {
       oldLayoutManager.cancelAnimations();
       reset();
       oldLayoutManager.detach();
+      setContentTransform(1.0f, 0.0f, 0.0f);
     }
 
     this.layoutManager = layoutManager;
@@ -296,6 +362,350 @@ public class GalleryView extends ViewGroup {
     return adapter;
   }
 
+  /**
+   * Sets the fling velocity threshold, in pixels per second.
+   *
+   * Pages bound while the GalleryLayoutManager is flinging faster than the threshold
+   * are bound with {@link GalleryAdapter#BIND_LEVEL_LIGHT}. They are upgraded to
+   * {@link GalleryAdapter#BIND_LEVEL_FULL} once the fling slows down.
+   *
+   * Non-positive value disables light binding. It's disabled by default.
+   */
+  public void setLightBindVelocity(float velocity) {
+    lightBindVelocity = velocity;
+  }
+
+  /**
+   * Returns the fling velocity threshold set in {@link #setLightBindVelocity(float)}.
+   */
+  public float getLightBindVelocity() {
+    return lightBindVelocity;
+  }
+
+  /**
+   * Sets the fling velocity threshold for deferring tiles, in pixels per second.
+   *
+   * While the GalleryView is interacting, {@link TiledDrawable}s decoded by its
+   * {@link TileExecutor} draw sampled tiles and defer decoding full resolution tiles.
+   * The GalleryView is interacting if it's touched, scaled, over scrolled, turning pages
+   * or flinging faster than the threshold. Deferred tiles are decoded once
+   * the interaction ends, the nearest to the center of the viewport first.
+   *
+   * Non-positive value disables deferring. It's disabled by default.
+   */
+  public void setDeferTileVelocity(float velocity) {
+    if (deferTileVelocity != velocity) {
+      deferTileVelocity = velocity;
+      updateInteracting();
+    }
+  }
+
+  /**
+   * Returns the fling velocity threshold set in {@link #setDeferTileVelocity(float)}.
+   */
+  public float getDeferTileVelocity() {
+    return deferTileVelocity;
+  }
+
+  /*
+   * Tells the TileExecutor whether the GalleryView is interacting.
+   */
+  void updateInteracting() {
+    boolean interacting = false;
+    if (deferTileVelocity > 0.0f) {
+      if (touching || (gestureHandler != null && gestureHandler.isAnimating())) {
+        interacting = true;
+      } else if (layoutManager != null && layoutManager.isAnimating()) {
+        // Animations without fling velocity, like turning pages, are treated as fast
+        float velocity = layoutManager.getFlingVelocity();
+        interacting = velocity <= 0.0f || velocity > deferTileVelocity;
+      }
+    }
+    tileExecutor.setInteracting(interacting);
+  }
+
+  /**
+   * Enables or disables hardware layers for pages.
+   *
+   * If it's enabled, pages are drawn into hardware layers while they are moving
+   * by touching or animations. Moving pages are composited from their layers instead
+   * of being redrawn. Each layer is redrawn only if its own page is invalidated.
+   * Layers are removed once pages stop moving.
+   *
+   * It only works with hardware acceleration. It's disabled by default.
+   */
+  public void setPageLayersEnabled(boolean enabled) {
+    if (pageLayersEnabled != enabled) {
+      pageLayersEnabled = enabled;
+      updatePageLayers();
+    }
+  }
+
+  /**
+   * Returns {@code true} if hardware layers for pages are enabled.
+   */
+  public boolean isPageLayersEnabled() {
+    return pageLayersEnabled;
+  }
+
+  /*
+   * Adds hardware layers to drawn pages if pages are moving, otherwise removes them.
+   */
+  private void updatePageLayers() {
+    boolean moving = pageLayersEnabled
+        && (touching || (layoutManager != null && layoutManager.isAnimating()));
+    for (GalleryPage page : pages.values()) {
+      setPageLayer(page, moving && !page.offscreen);
+    }
+  }
+
+  /*
+   * Called when an animation of the GalleryLayoutManager or the GalleryGestureHandler ends.
+   * The last frame of an animation might be laid before the animation is marked ended.
+   */
+  void onAnimationEnd() {
+    if (pageLayersEnabled) {
+      updatePageLayers();
+    }
+    updateInteracting();
+  }
+
+  private static void setPageLayer(GalleryPage page, boolean layer) {
+    if (page.layer != layer) {
+      // Leave the layer set by the app, with its paint
+      if (layer && page.view.getLayerType() != LAYER_TYPE_NONE) {
+        return;
+      }
+      page.layer = layer;
+      page.view.setLayerType(layer ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE, null);
+    }
+  }
+
+  /**
+   * Sets a RecycledPagePool to share unbound pages with other GalleryViews.
+   * Pages of this GalleryView are kept in the shared pool instead of being destroyed
+   * when the adapter changes or the GalleryView is detached from window,
+   * so the next GalleryView could reuse them. The owner of the pool should call
+   * {@link RecycledPagePool#clear(GalleryAdapter)} when it's no longer used.
+   *
+   * {@code null} makes the GalleryView use its own pool.
+   *
+   * @throws IllegalStateException if it called in layout
+   */
+  public void setRecycledPagePool(@Nullable RecycledPagePool pool) {
+    checkNotInLayout("Can't set RecycledPagePool in layout");
+
+    if (sharedPagePool ? pagePool == pool : pool == null) {
+      return;
+    }
+
+    // Destroy pages in own pool
+    if (!sharedPagePool && adapter != null) {
+      pagePool.clear(adapter);
+    }
+
+    sharedPagePool = pool != null;
+    pagePool = pool != null ? pool : new RecycledPagePool();
+  }
+
+  /**
+   * Returns the RecycledPagePool which keeps unbound pages of this GalleryView.
+   */
+  @NonNull
+  public RecycledPagePool getRecycledPagePool() {
+    return pagePool;
+  }
+
+  /**
+   * Creates pages of the type into the RecycledPagePool in idle time,
+   * until there are {@code count} recycled pages of the type. It avoids
+   * creating pages in layout. The count is limited by
+   * {@link RecycledPagePool#setMaxRecycledPages(int, int)}.
+   *
+   * Pending preparations are dropped when the adapter or
+   * the layout manager changes.
+   */
+  public void preparePages(int type, int count) {
+    pagesToPrepare.put(type, count);
+    if (!prepareHandlerAdded) {
+      prepareHandlerAdded = true;
+      Looper.myQueue().addIdleHandler(prepareHandler);
+    }
+  }
+
+  /*
+   * Creates one page in each idle time to keep the main thread responsive.
+   */
+  private final MessageQueue.IdleHandler prepareHandler = new MessageQueue.IdleHandler() {
+    @Override
+    public boolean queueIdle() {
+      while (adapter != null && pagesToPrepare.size() > 0) {
+        int type = pagesToPrepare.keyAt(0);
+        int count = pagesToPrepare.valueAt(0);
+        if (pagePool.getRecycledPageCount(type) < count
+            && pagePool.prepare(GalleryView.this, adapter, type)) {
+          // Wait for next idle time
+          return true;
+        }
+        // Done, or the pool of the type is full
+        pagesToPrepare.removeAt(0);
+      }
+
+      pagesToPrepare.clear();
+      prepareHandlerAdded = false;
+      return false;
+    }
+  };
+
+  /**
+   * Sets the TileExecutor to decode tiles of TiledDrawables in this GalleryView.
+   * The old one is shut down. The TileExecutor is paused if this GalleryView
+   * is not shown, and it's shut down if this GalleryView is detached from window.
+   *
+   * @see TiledDrawable#setExecutor(java.util.concurrent.Executor)
+   */
+  public void setTileExecutor(@NonNull TileExecutor executor) {
+    if (tileExecutor == executor) {
+      return;
+    }
+    tileExecutor.shutdown();
+    tileExecutor = executor;
+    updateTileExecutorState();
+    updateInteracting();
+  }
+
+  /**
+   * Returns the TileExecutor to decode tiles of TiledDrawables in this GalleryView.
+   * Set it to TiledDrawables by {@link TiledDrawable#setExecutor(java.util.concurrent.Executor)}.
+   */
+  @NonNull
+  public TileExecutor getTileExecutor() {
+    return tileExecutor;
+  }
+
+  /*
+   * Pauses tileExecutor if the GalleryView is not shown.
+   */
+  private void updateTileExecutorState() {
+    if (tileExecutor == null) {
+      // Called in the constructor of View
+      return;
+    }
+
+    if (getWindowVisibility() == VISIBLE && isShown()) {
+      tileExecutor.resume();
+    } else {
+      tileExecutor.pause();
+    }
+  }
+
+  @Override
+  protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+    super.onVisibilityChanged(changedView, visibility);
+    updateTileExecutorState();
+  }
+
+  @Override
+  protected void onWindowVisibilityChanged(int visibility) {
+    super.onWindowVisibilityChanged(visibility);
+    updateTileExecutorState();
+
+    if (visibility == VISIBLE && offscreenPagesTrimmed) {
+      offscreenPagesTrimmed = false;
+      requestLayout();
+    }
+  }
+
+  /**
+   * Drops pages for the tier of {@link MemoryPressureCoordinator}.
+   *
+   * {@link MemoryPressureCoordinator#TIER_RECYCLED_PAGES} destroys pages
+   * in the RecycledPagePool. A pool shared by {@link #setRecycledPagePool(RecycledPagePool)}
+   * is skipped, its owner should clear it.
+   * {@link MemoryPressureCoordinator#TIER_OFFSCREEN_PAGES} unbinds offscreen pages,
+   * and stops pinning them until the window of this GalleryView is shown again,
+   * or until the next trim which doesn't reach this tier.
+   */
+  @Override
+  public void trimMemory(@MemoryPressureCoordinator.Tier int tier) {
+    if (tier == MemoryPressureCoordinator.TIER_PENDING_TILES) {
+      // Every trim starts from the first tier. The memory pressure is relieved
+      // if the trim stops before TIER_OFFSCREEN_PAGES, otherwise it's set again.
+      if (offscreenPagesTrimmed) {
+        offscreenPagesTrimmed = false;
+        requestLayout();
+      }
+    } else if (tier == MemoryPressureCoordinator.TIER_RECYCLED_PAGES) {
+      // Pages in a shared pool might be created by other adapters
+      if (!sharedPagePool && adapter != null) {
+        pagePool.clear(adapter);
+      }
+    } else if (tier == MemoryPressureCoordinator.TIER_OFFSCREEN_PAGES) {
+      if (!offscreenPagesTrimmed) {
+        offscreenPagesTrimmed = true;
+        // Offscreen pages are unpinned in next layout
+        requestLayout();
+      }
+    }
+  }
+
+  /*
+   * Returns true if offscreen pages should not be pinned because of memory pressure.
+   */
+  boolean isOffscreenPagesTrimmed() {
+    return offscreenPagesTrimmed;
+  }
+
+  /**
+   * Sets a PerformanceListener to receive layout and binding metrics.
+   * Metrics are not collected if no PerformanceListener is set.
+   *
+   * Tile decoding metrics are available in
+   * {@link com.hippo.android.gallery.drawable.TiledDrawable#setPerformanceListener(
+   * com.hippo.android.gallery.drawable.TiledDrawable.PerformanceListener)}.
+   */
+  public void setPerformanceListener(@Nullable PerformanceListener listener) {
+    performanceListener = listener;
+  }
+
+  /**
+   * Returns the PerformanceListener set in {@link #setPerformanceListener(PerformanceListener)}.
+   */
+  @Nullable
+  public PerformanceListener getPerformanceListener() {
+    return performanceListener;
+  }
+
+  /**
+   * PerformanceListener receives layout and binding metrics of a GalleryView.
+   * All methods are called in main thread, in layout. They should return quickly.
+   */
+  public interface PerformanceListener {
+
+    /**
+     * Called after each layout pass.
+     *
+     * @param durationNs the duration of the layout pass, in nanoseconds
+     * @param pinnedPages the count of pages pinned in the layout pass
+     * @param boundPages the count of pages bound in the layout pass
+     * @param unpinnedPages the count of pages unpinned in the layout pass
+     * @param createdPages the count of pages created in the layout pass
+     * @param reusedPages the count of pages reused from RecycledPagePool in the layout pass
+     */
+    void onLayout(GalleryView view, long durationNs, int pinnedPages, int boundPages,
+        int unpinnedPages, int createdPages, int reusedPages);
+
+    /**
+     * Called after a page is bound.
+     *
+     * @param type the type of the page
+     * @param level the bind level of the page
+     * @param durationNs the duration of binding, in nanoseconds
+     */
+    void onBindPage(GalleryView view, int type, @GalleryAdapter.BindLevel int level,
+        long durationNs);
+  }
+
   public interface OnSelectedIndexChangeListener {
     void onSelectedIndexChanged(GalleryView view, int selectedIndex);
   }
@@ -314,6 +724,8 @@ public class GalleryView extends ViewGroup {
     }
     // Reset view to avoid memory leak
     reset();
+    // Stop decoding tiles
+    tileExecutor.shutdown();
 
     if (BuildConfig.DEBUG) {
       if (getChildCount() != 0) {
@@ -370,16 +782,41 @@ public class GalleryView extends ViewGroup {
     int width = getWidth();
     int height = getHeight();
 
+    PerformanceListener listener = performanceListener;
+    long startTime = listener != null ? System.nanoTime() : 0;
+
+    GalleryTrace.beginSection("GalleryView.layout");
     startLayout();
     if (width > 0 && height > 0 && adapter.getPageCount() > 0) {
+      GalleryTrace.beginSection("GalleryLayoutManager.layout");
       layoutManager.layout(width, height);
+      GalleryTrace.endSection();
     }
     endLayout();
+    GalleryTrace.endSection();
+
+    if (listener != null) {
+      listener.onLayout(this, System.nanoTime() - startTime, pages.size(), boundPageCount,
+          unpinnedPageCount, pagePool.getCreateCount() - poolCreateCount,
+          pagePool.getReuseCount() - poolReuseCount);
+    }
   }
 
   private void startLayout() {
     inLayout = true;
 
+    //noinspection ConstantConditions
+    if (lightBindVelocity > 0.0f && layoutManager.getFlingVelocity() > lightBindVelocity) {
+      bindLevel = GalleryAdapter.BIND_LEVEL_LIGHT;
+    } else {
+      bindLevel = GalleryAdapter.BIND_LEVEL_FULL;
+    }
+
+    boundPageCount = 0;
+    unpinnedPageCount = 0;
+    poolCreateCount = pagePool.getCreateCount();
+    poolReuseCount = pagePool.getReuseCount();
+
     // Make all attached valid pages' pinned false to
     // track unpinned pages
     for (GalleryPage page : pages.values()) {
@@ -404,7 +841,20 @@ public class GalleryView extends ViewGroup {
     }
     invalidPages.clear();
 
+    // Upgrade lightly bound pages if the fling slows down
+    if (bindLevel == GalleryAdapter.BIND_LEVEL_FULL) {
+      for (GalleryPage page : pages.values()) {
+        //noinspection ConstantConditions
+        adapter.upgradePage(page);
+      }
+    }
+
     inLayout = false;
+
+    if (pageLayersEnabled) {
+      updatePageLayers();
+    }
+    updateInteracting();
   }
 
   /*
@@ -412,22 +862,14 @@ public class GalleryView extends ViewGroup {
    * Note: pages or invalidPages still keeps the page.
    */
   private void unpinPageInternal(GalleryPage page) {
+    unpinnedPageCount++;
     page.pinned = false;
+    setPageOffscreen(page, false);
+    setPageLayer(page, false);
     //noinspection ConstantConditions
     adapter.unbindPage(page);
     removeView(page.view);
-
-    Stack<GalleryPage> stack = cache.get(page.getType());
-    if (stack == null) {
-      stack = new Stack<>();
-      cache.put(page.getType(), stack);
-    }
-
-    if (stack.size() < MAX_PAGES_EACH_TYPE) {
-      stack.push(page);
-    } else {
-      adapter.destroyPage(page);
-    }
+    pagePool.recycle(adapter, page);
   }
 
   /**
@@ -455,6 +897,7 @@ public class GalleryView extends ViewGroup {
       }
 
       page.pinned = true;
+      setPageOffscreen(page, false);
       return page;
     }
 
@@ -473,27 +916,52 @@ public class GalleryView extends ViewGroup {
     }
 
     if (page == null) {
-      // Get from cache
-      Stack<GalleryPage> stack = cache.get(type);
-      if (stack != null && !stack.empty()) {
-        page = stack.pop();
-      }
-
-      // Create page
-      if (page == null) {
-        page = adapter.createPage(this, type);
-      }
-
+      // Get from cache, or create one
+      page = pagePool.obtain(this, adapter, type);
       addView(page.view);
     }
 
     page.pinned = true;
+    setPageOffscreen(page, false);
     pages.put(index, page);
-    adapter.bindPage(page, index);
+    boundPageCount++;
+    if (performanceListener != null) {
+      long startTime = System.nanoTime();
+      adapter.bindPage(page, index, bindLevel);
+      performanceListener.onBindPage(this, type, bindLevel, System.nanoTime() - startTime);
+    } else {
+      adapter.bindPage(page, index, bindLevel);
+    }
+
+    return page;
+  }
 
+  /**
+   * Pins the page with the the index to gallery as an offscreen page.
+   * Offscreen pages are bound, but they are not measured, laid or drawn.
+   * GalleryLayoutManager should not measure or lay them either.
+   *
+   * @throws IllegalStateException if it called out of layout
+   * @see GalleryLayoutManager#setOffscreenPageLimit(int, int)
+   */
+  @NonNull
+  public GalleryPage pinOffscreenPage(int index) {
+    GalleryPage page = pinPage(index);
+    setPageOffscreen(page, true);
     return page;
   }
 
+  private void setPageOffscreen(GalleryPage page, boolean offscreen) {
+    if (page.offscreen != offscreen) {
+      page.offscreen = offscreen;
+      if (offscreen) {
+        offscreenViews.add(page.view);
+      } else {
+        offscreenViews.remove(page.view);
+      }
+    }
+  }
+
   /**
    * Unpin the page.
    *
@@ -570,11 +1038,31 @@ public class GalleryView extends ViewGroup {
     invalidate();
   }
 
+  /**
+   * Apply a transform to the render of all children, without laying them.
+   */
+  void setContentTransform(float scale, float translateX, float translateY) {
+    if (contentScale != scale || contentTranslateX != translateX
+        || contentTranslateY != translateY) {
+      contentScale = scale;
+      contentTranslateX = translateX;
+      contentTranslateY = translateY;
+      invalidate();
+    }
+  }
+
   @Override
   protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+    if (offscreenViews.contains(child)) {
+      return true;
+    }
+
     if (layoutManager == null || layoutManager.shouldDrawView(child)) {
       int saved = canvas.save();
-      canvas.translate(overScrollX, overScrollY);
+      canvas.translate(overScrollX + contentTranslateX, overScrollY + contentTranslateY);
+      if (contentScale != 1.0f) {
+        canvas.scale(contentScale, contentScale);
+      }
       boolean result = super.drawChild(canvas, child, drawingTime);
       canvas.restoreToCount(saved);
       return result;
@@ -635,22 +1123,14 @@ public class GalleryView extends ViewGroup {
     layoutManager.scale(x, y, factor, null);
   }
 
-  private interface EffectChecker {
-    /*
-     * Returns true if the index is effected.
-     */
-    boolean effected(int oldIndex);
-  }
-
-  private interface NewIndexGetter {
-    /*
-     * Returns INVALID_INDEX to invalid the page.
-     * Returns the oldIndex to keep the index.
-     */
-    int getNewIndex(int oldIndex);
-  }
+  /*
+   * Applies the update ops to attached pages in one pass.
+   */
+  void notifyPageUpdates(List<UpdateOp> ops) {
+    checkNotInLayout("Can't notify page updates in layout");
+    if (layoutManager == null) return;
+    if (ops.isEmpty()) return;
 
-  private void notifyPages(EffectChecker checker, NewIndexGetter getter) {
     List<GalleryPage> holder = null;
 
     boolean isEmpty = pages.isEmpty();
@@ -660,9 +1140,14 @@ public class GalleryView extends ViewGroup {
     while (iterator.hasNext()) {
       GalleryPage page = iterator.next();
       int oldIndex = page.index;
-      effected |= checker.effected(oldIndex);
 
-      int newIndex = getter.getNewIndex(oldIndex);
+      int newIndex = oldIndex;
+      for (int i = 0, n = ops.size(); i < n && newIndex != INVALID_INDEX; i++) {
+        UpdateOp op = ops.get(i);
+        effected |= op.effected(newIndex);
+        newIndex = op.getNewIndex(newIndex);
+      }
+
       if (newIndex == INVALID_INDEX) {
         // Invalid the page
         page.index = GalleryView.INVALID_INDEX;
@@ -686,121 +1171,41 @@ public class GalleryView extends ViewGroup {
       }
     }
 
-    if (isEmpty || effected) {
-      requestLayout();
+    int oldSelectedIndex = layoutManager.getSelectedIndex();
+    int newSelectedIndex = oldSelectedIndex;
+    for (int i = 0, n = ops.size(); i < n; i++) {
+      newSelectedIndex = ops.get(i).getNewSelectedIndex(newSelectedIndex);
+    }
+    if (newSelectedIndex != oldSelectedIndex) {
+      layoutManager.updateSelectedIndex(newSelectedIndex);
     }
-  }
-
-  void notifyPageRangeChanged(int indexStart, int itemCount) {
-    checkNotInLayout("Can't call notifyPageRangeChanged() in layout");
-    if (layoutManager == null) return;
-    if (pages.isEmpty()) return;
-    if (itemCount < 1) return;
-
-    notifyPages(
-        oldIndex -> oldIndex >= indexStart && oldIndex < indexStart + itemCount,
-        oldIndex -> {
-          // Invalid pages whose index is in [indexStart, indexStart + itemCount)
-          if (oldIndex >= indexStart && oldIndex < indexStart + itemCount) {
-            return GalleryView.INVALID_INDEX;
-          } else {
-            return oldIndex;
-          }
-        });
-  }
-
-  void notifyPageRangeInserted(int indexStart, int itemCount) {
-    checkNotInLayout("Can't call notifyPageRangeInserted() in layout");
-    if (layoutManager == null) return;
-    if (itemCount < 1) return;
 
-    notifyPages(
-        // Include the items next to the inserted items
-        oldIndex -> oldIndex >= indexStart - 1 && oldIndex <= indexStart + itemCount,
-        oldIndex -> {
-          // Increases the index of pages, whose index is in [indexStart, +∞), by itemCount.
-          if (oldIndex >= indexStart) {
-            return oldIndex + itemCount;
-          } else {
-            return oldIndex;
-          }
-        });
+    // CHANGE and MOVE can't make new pages visible if no page is attached
+    boolean structural = false;
+    if (isEmpty) {
+      for (int i = 0, n = ops.size(); i < n && !structural; i++) {
+        int mode = ops.get(i).mode;
+        structural = mode != UpdateOp.CHANGE && mode != UpdateOp.MOVE;
+      }
+    }
 
-    int selectedIndex = layoutManager.getSelectedIndex();
-    if (selectedIndex >= indexStart) {
-      layoutManager.updateSelectedIndex(selectedIndex + itemCount);
+    if (structural || effected) {
+      requestLayout();
     }
   }
 
-  void notifyPageRangeRemoved(int indexStart, int itemCount) {
-    checkNotInLayout("Can't call notifyPageRangeRemoved() in layout");
-    if (layoutManager == null) return;
-    if (itemCount < 1) return;
-
-    notifyPages(
-        oldIndex -> oldIndex >= indexStart && oldIndex < indexStart + itemCount,
-        oldIndex -> {
-          // Decreases the index of pages, whose index is in [indexStart + itemCount, +∞), by itemCount
-          if (oldIndex >= indexStart + itemCount) {
-            return oldIndex - itemCount;
-            // Invalid pages whose index is in [indexStart, indexStart + itemCount)
-          } else if (oldIndex >= indexStart) {
-            return GalleryView.INVALID_INDEX;
-          } else {
-            return oldIndex;
-          }
-        });
-
-    int selectedIndex = layoutManager.getSelectedIndex();
-    if (selectedIndex >= indexStart + itemCount) {
-      layoutManager.updateSelectedIndex(selectedIndex - itemCount);
-    } else if (selectedIndex >= indexStart) {
-      layoutManager.updateSelectedIndex(indexStart);
-    }
-  }
-
-  void notifyPageMoved(int fromIndex, int toIndex) {
-    checkNotInLayout("Can't call notifyPageMoved() in layout");
-    if (pages.isEmpty()) return;
-    if (layoutManager == null) return;
-    if (fromIndex == toIndex) return;
-
-    int minIndex;
-    int maxIndex;
-    int diff;
-    if (fromIndex < toIndex) {
-      minIndex = fromIndex;
-      maxIndex = toIndex;
-      diff = -1;
-    } else {
-      minIndex = toIndex;
-      maxIndex = fromIndex;
-      diff = 1;
-    }
-
-    notifyPages(
-        oldIndex -> oldIndex == fromIndex || oldIndex == toIndex,
-        oldIndex -> {
-          if (oldIndex == fromIndex) {
-            return toIndex;
-          } else if (oldIndex >= minIndex && oldIndex <= maxIndex) {
-            return oldIndex + diff;
-          } else {
-            return oldIndex;
-          }
-        });
-  }
-
-  void notifyPageSetChanged() {
-    checkNotInLayout("Can't call notifyPageSetChanged() in layout");
-    if (layoutManager == null) return;
-
-    notifyPages(oldIndex -> true, oldIndex -> GalleryView.INVALID_INDEX);
+  private void setTouching(boolean touching) {
+    this.touching = touching;
+    if (pageLayersEnabled) {
+      updatePageLayers();
+    }
+    updateInteracting();
   }
 
   private GestureRecognizer.OnGestureListener listener = new GestureRecognizer.OnGestureListener() {
     @Override
     public void onDown(float x, float y) {
+      setTouching(true);
       if (gestureHandler != null) {
         gestureHandler.onDown(x, y);
       }
@@ -811,6 +1216,8 @@ public class GalleryView extends ViewGroup {
       if (gestureHandler != null) {
         gestureHandler.onUp(x, y);
       }
+      // After the GalleryGestureHandler, animations might be started
+      setTouching(false);
     }
 
     @Override
@@ -818,6 +1225,8 @@ public class GalleryView extends ViewGroup {
       if (gestureHandler != null) {
         gestureHandler.onCancel();
       }
+      // After the GalleryGestureHandler, animations might be started
+      setTouching(false);
     }
 
     @Override
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.support.annotation.IntDef;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MemoryPressureCoordinator drops memory of the gallery in tiers as trim level rises.
+ *
+ * <ol>
+ *   <li>{@link #TIER_PENDING_TILES}: tiles waiting to be decoded but not visible</li>
+ *   <li>{@link #TIER_SAMPLE_LEVELS}: tiles of the sample levels not drawn now</li>
+ *   <li>{@link #TIER_RECYCLED_PAGES}: pages in {@link RecycledPagePool}</li>
+ *   <li>{@link #TIER_OFFSCREEN_PAGES}: offscreen pages and their images</li>
+ * </ol>
+ *
+ * Register it by {@link android.content.Context#registerComponentCallbacks(
+ * android.content.ComponentCallbacks)}, then register {@link Trimmable Trimmables},
+ * like {@code TiledDrawable::trimMemory} and GalleryViews.
+ * For each trim level, tiers are dropped from the first one, and Trimmables are
+ * called in the order of registering for each tier.
+ */
+public class MemoryPressureCoordinator implements ComponentCallbacks2 {
+
+  @IntDef({TIER_NONE, TIER_PENDING_TILES, TIER_SAMPLE_LEVELS, TIER_RECYCLED_PAGES,
+      TIER_OFFSCREEN_PAGES})
+  @Retention(RetentionPolicy.SOURCE)
+  public @interface Tier {}
+
+  public static final int TIER_NONE = 0;
+  public static final int TIER_PENDING_TILES = 1;
+  public static final int TIER_SAMPLE_LEVELS = 2;
+  public static final int TIER_RECYCLED_PAGES = 3;
+  public static final int TIER_OFFSCREEN_PAGES = 4;
+
+  private final List<Trimmable> trimmables = new ArrayList<>();
+
+  /**
+   * Returns the highest tier to drop for the trim level.
+   */
+  @Tier
+  public static int getTier(int level) {
+    if (level >= TRIM_MEMORY_UI_HIDDEN) {
+      // Nothing is visible, drop all
+      return TIER_OFFSCREEN_PAGES;
+    } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+      return TIER_RECYCLED_PAGES;
+    } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+      return TIER_SAMPLE_LEVELS;
+    } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+      return TIER_PENDING_TILES;
+    } else {
+      return TIER_NONE;
+    }
+  }
+
+  /**
+   * Registers a Trimmable. Unregister it when it's no longer used.
+   */
+  @MainThread
+  public void register(@NonNull Trimmable trimmable) {
+    if (!trimmables.contains(trimmable)) {
+      trimmables.add(trimmable);
+    }
+  }
+
+  /**
+   * Unregisters a Trimmable.
+   */
+  @MainThread
+  public void unregister(@NonNull Trimmable trimmable) {
+    trimmables.remove(trimmable);
+  }
+
+  /**
+   * Drops tiers from the first one to the tier.
+   */
+  @MainThread
+  public void trim(@Tier int tier) {
+    // Trimmables might unregister themselves
+    List<Trimmable> trimmables = new ArrayList<>(this.trimmables);
+    for (int t = TIER_PENDING_TILES; t <= tier; t++) {
+      for (Trimmable trimmable : trimmables) {
+        trimmable.trimMemory(t);
+      }
+    }
+  }
+
+  @Override
+  public void onTrimMemory(int level) {
+    trim(getTier(level));
+  }
+
+  @Override
+  public void onLowMemory() {
+    trim(TIER_OFFSCREEN_PAGES);
+  }
+
+  @Override
+  public void onConfigurationChanged(Configuration newConfig) {}
+
+  /**
+   * Trimmable drops the memory of a tier.
+   */
+  public interface Trimmable {
+
+    /**
+     * Drops the memory of the tier. Lower tiers are already dropped.
+     */
+    @MainThread
+    void trimMemory(@Tier int tier);
+  }
+}
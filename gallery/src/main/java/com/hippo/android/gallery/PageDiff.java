@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PageDiff computes the minimal page notifications which turn
+ * an old page list to a new page list, with Myers' diff algorithm.
+ *
+ * {@link #calculate(Callback)} could be called in any thread.
+ * Dispatch the result to the GalleryAdapter in main thread
+ * after the adapter data is updated.
+ */
+public final class PageDiff {
+  private PageDiff() {}
+
+  public interface Callback {
+
+    /**
+     * Returns the page count of the old list.
+     */
+    int getOldPageCount();
+
+    /**
+     * Returns the page count of the new list.
+     */
+    int getNewPageCount();
+
+    /**
+     * Returns true if the two pages represent the same item.
+     */
+    boolean arePagesTheSame(int oldIndex, int newIndex);
+
+    /**
+     * Returns true if the two same pages have the same content.
+     * Only called if {@link #arePagesTheSame(int, int)} returns true.
+     */
+    boolean arePageContentsTheSame(int oldIndex, int newIndex);
+  }
+
+  /**
+   * Computes the notifications between the old list and the new list.
+   *
+   * It takes O((N + M) * D) time and space, N and M is the size of the lists,
+   * D is the length of the edit script.
+   */
+  @NonNull
+  @WorkerThread
+  public static Result calculate(@NonNull Callback callback) {
+    int n = callback.getOldPageCount();
+    int m = callback.getNewPageCount();
+    int max = n + m;
+    int offset = max + 1;
+
+    // v[k + offset] is the furthest x on diagonal k
+    int[] v = new int[2 * max + 3];
+    // The v before each edit step
+    List<int[]> trace = new ArrayList<>();
+
+    int d = 0;
+    search:
+    for (; d <= max; d++) {
+      trace.add(v.clone());
+      for (int k = -d; k <= d; k += 2) {
+        int x;
+        if (k == -d || (k != d && v[k - 1 + offset] < v[k + 1 + offset])) {
+          x = v[k + 1 + offset];
+        } else {
+          x = v[k - 1 + offset] + 1;
+        }
+        int y = x - k;
+        while (x < n && y < m && callback.arePagesTheSame(x, y)) {
+          x++;
+          y++;
+        }
+        v[k + offset] = x;
+        if (x >= n && y >= m) {
+          break search;
+        }
+      }
+    }
+
+    // Backtrack from the end, so the old indexes before the current op are always valid
+    List<UpdateOp> ops = new ArrayList<>();
+    int x = n;
+    int y = m;
+    for (; d > 0; d--) {
+      int[] prev = trace.get(d);
+      int k = x - y;
+      int prevK;
+      if (k == -d || (k != d && prev[k - 1 + offset] < prev[k + 1 + offset])) {
+        prevK = k + 1;
+      } else {
+        prevK = k - 1;
+      }
+      int prevX = prev[prevK + offset];
+      int prevY = prevX - prevK;
+
+      // The snake
+      for (; x > prevX && y > prevY; x--, y--) {
+        addChange(callback, ops, x - 1, y - 1);
+      }
+
+      if (prevK == k + 1) {
+        // Insert new page
+        UpdateOp.add(ops, new UpdateOp(UpdateOp.INSERT, prevX, 1));
+      } else {
+        // Remove old page
+        UpdateOp.add(ops, new UpdateOp(UpdateOp.REMOVE, prevX, 1));
+      }
+
+      x = prevX;
+      y = prevY;
+    }
+    // The first snake
+    for (; x > 0 && y > 0; x--, y--) {
+      addChange(callback, ops, x - 1, y - 1);
+    }
+
+    return new Result(ops);
+  }
+
+  private static void addChange(Callback callback, List<UpdateOp> ops, int oldIndex, int newIndex) {
+    if (!callback.arePageContentsTheSame(oldIndex, newIndex)) {
+      UpdateOp.add(ops, new UpdateOp(UpdateOp.CHANGE, oldIndex, 1));
+    }
+  }
+
+  /**
+   * The notifications computed by {@link #calculate(Callback)}.
+   */
+  public static final class Result {
+
+    private final List<UpdateOp> ops;
+
+    private Result(List<UpdateOp> ops) {
+      this.ops = ops;
+    }
+
+    /**
+     * Dispatches the notifications to the adapter in one batch.
+     */
+    public void dispatchUpdatesTo(@NonNull GalleryAdapter adapter) {
+      adapter.beginBatchedUpdates();
+      try {
+        for (UpdateOp op : ops) {
+          switch (op.mode) {
+            case UpdateOp.CHANGE:
+              adapter.notifyPageRangeChanged(op.start, op.count);
+              break;
+            case UpdateOp.INSERT:
+              adapter.notifyPageRangeInserted(op.start, op.count);
+              break;
+            case UpdateOp.REMOVE:
+              adapter.notifyPageRangeRemoved(op.start, op.count);
+              break;
+          }
+        }
+      } finally {
+        adapter.endBatchedUpdates();
+      }
+    }
+  }
+}
@@ -21,13 +21,16 @@ package com.hippo.android.gallery;
  */
 
 import android.content.Context;
+import android.graphics.RectF;
 import android.support.animation.FlingAnimation;
 import android.support.animation.FloatPropertyCompat;
 import android.support.animation.SpringAnimation;
 import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 import android.view.View;
+import com.hippo.android.gallery.intf.Accurate;
 import com.hippo.android.gallery.intf.Transformable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -58,6 +61,9 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
   // Current page index
   private int currentIndex = 0;
 
+  // True if reading from small index to large index
+  private boolean forward = true;
+
   // The interval between pages
   private int pageInterval = 0;
 
@@ -87,6 +93,9 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
   @Transformable.StartPosition
   private int startPosition = Transformable.START_POSITION_TOP_LEFT;
 
+  @Accurate.Rotation
+  private int rotation = Accurate.ROTATION_0;
+
   // Stores the remain offset x and y
   private float[] temp = new float[2];
 
@@ -127,6 +136,8 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
   public PagerLayoutManager(Context context) {
     turningThreshold = context.getResources().getDisplayMetrics().density * TURNING_THRESHOLD_DP;
     turningAnimation.getSpring().setDampingRatio(1.0f);
+    turningAnimation.addEndListener((animation, canceled, value, velocity) -> notifyAnimationEnd());
+    flingAnimation.addEndListener((animation, canceled, value, velocity) -> notifyAnimationEnd());
   }
 
   /**
@@ -221,6 +232,33 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
     }
   }
 
+  /**
+   * Sets clockwise rotation for each page which is transformer.
+   *
+   * @throws IllegalStateException if the GalleryView it attached to is in layout.
+   */
+  @Override
+  public void setContentRotation(@Accurate.Rotation int rotation) {
+    if (isInLayout()) throw new IllegalStateException("Can't set rotation during layout");
+
+    if (this.rotation == rotation) return;
+    this.rotation = rotation;
+
+    GalleryView view = getGalleryView();
+    if (view == null || view.getChildCount() == 0) return;
+
+    for (GalleryPage page : view.getPages()) {
+      if (page.view instanceof Transformable) {
+        ((Transformable) page.view).setContentRotation(rotation);
+      }
+    }
+  }
+
+  @Override
+  public int getContentRotation() {
+    return rotation;
+  }
+
   /**
    * Sets PagerLayout to this PagerLayoutManager.
    *
@@ -243,7 +281,9 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
   }
 
   private GalleryPage pinPage(GalleryView view, int index) {
-    boolean isNew = view.getPageAt(index) == null;
+    // Offscreen pages are configured when they come into screen
+    GalleryPage oldPage = view.getPageAt(index);
+    boolean isNew = oldPage == null || oldPage.isOffscreen();
 
     GalleryPage page = view.pinPage(index);
     if (isNew && page.view instanceof Transformable) {
@@ -254,6 +294,7 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
         transformable.setScaleType(scaleType);
       }
       transformable.setStartPosition(startPosition);
+      transformable.setContentRotation(rotation);
     }
 
     return page;
@@ -274,6 +315,7 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
     }
 
     if (currentIndex != index) {
+      forward = index > currentIndex;
       currentIndex = index;
 
       /*
@@ -303,33 +345,56 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
 
     int pageCount = view.getPageCount();
 
-    // Ensure current index in the range
-    int newIndex = Utils.clamp(currentIndex, 0, pageCount - 1);
+    pagerLayout.start(width, height, pageInterval);
+
+    // Ensure current index in the range, and it's the start of a spread
+    int newIndex = pagerLayout.getSpreadStart(Utils.clamp(currentIndex, 0, pageCount - 1),
+        pageCount);
     if (currentIndex != newIndex) {
       currentIndex = newIndex;
       pageOffset = 0;
     }
 
-    pagerLayout.start(width, height, pageInterval);
-
     // Ensure page offset in the range
     fixPageOffset(view);
 
-    // Layout current page
-    GalleryPage current = pinPage(view, currentIndex);
-    pagerLayout.layoutPage(current.view, pageOffset, POSITION_CURRENT);
-    // Layout previous page
+    // Layout current spread
+    int currentSize = pagerLayout.getSpreadSize(currentIndex, pageCount);
+    layoutSpread(view, currentIndex, currentSize, POSITION_CURRENT);
+    int first = currentIndex;
+    int last = currentIndex + currentSize - 1;
+    // Layout previous spread
     if (currentIndex > 0) {
-      GalleryPage previous = pinPage(view, currentIndex - 1);
-      pagerLayout.layoutPage(previous.view, pageOffset, POSITION_PREVIOUS);
+      int previous = pagerLayout.getSpreadStart(currentIndex - 1, pageCount);
+      layoutSpread(view, previous, currentIndex - previous, POSITION_PREVIOUS);
+      first = previous;
+    }
+    // Layout next spread
+    if (last < pageCount - 1) {
+      int next = last + 1;
+      int nextSize = pagerLayout.getSpreadSize(next, pageCount);
+      layoutSpread(view, next, nextSize, POSITION_NEXT);
+      last = next + nextSize - 1;
     }
-    // Layout next page
-    if (currentIndex < pageCount - 1) {
-      GalleryPage next = pinPage(view, currentIndex + 1);
-      pagerLayout.layoutPage(next.view, pageOffset, POSITION_NEXT);
+
+    // Pin offscreen pages in reading direction
+    pinOffscreenPages(view, first, last, forward);
+  }
+
+  private void layoutSpread(GalleryView view, int start, int size, @Position int position) {
+    for (int i = 0; i < size; i++) {
+      GalleryPage page = pinPage(view, start + i);
+      pagerLayout.layoutPage(page.view, pageOffset, position, i, size);
     }
   }
 
+  /*
+   * Returns true if the current spread is the last one.
+   */
+  private boolean isLastSpread(int pageCount) {
+    return currentIndex + pagerLayout.getSpreadSize(currentIndex, pageCount) >= pageCount;
+  }
+
   /*
    * Returns true if there is a page fit.
    * Namely pageOffset is 0.
@@ -342,10 +407,11 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
 
   /*
    * Returns the transformer if current fit page is a transformer.
+   * Pages in a spread of multiple pages are not transformed.
    */
   @Nullable
   private Transformable getFitTransformer(GalleryView view) {
-    if (isPageFit()) {
+    if (isPageFit() && pagerLayout.getSpreadSize(currentIndex, view.getPageCount()) == 1) {
       GalleryPage page = view.getPageAt(currentIndex);
       if (page != null && page.view instanceof Transformable) {
         return (Transformable) page.view;
@@ -359,9 +425,15 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
     // Sometimes the edge of the page next to the fit page can be seen.
     // This method should avoid it.
     GalleryView galleryView = getGalleryView();
-    if (galleryView != null && isPageFit()) {
-      GalleryPage page = galleryView.getPageAt(currentIndex);
-      return page != null && view == page.view;
+    if (galleryView != null && pagerLayout != null && isPageFit()) {
+      int size = pagerLayout.getSpreadSize(currentIndex, galleryView.getPageCount());
+      for (int i = 0; i < size; i++) {
+        GalleryPage page = galleryView.getPageAt(currentIndex + i);
+        if (page != null && view == page.view) {
+          return true;
+        }
+      }
+      return false;
     }
     return true;
   }
@@ -372,17 +444,20 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
    */
   private float fixPageOffset(GalleryView view) {
     int pageRange = pagerLayout.getPageRange();
+    int pageCount = view.getPageCount();
 
     // Try to turn to previous page
     while (pageOffset >= pageRange && currentIndex > 0) {
-      currentIndex -= 1;
+      currentIndex = pagerLayout.getSpreadStart(currentIndex - 1, pageCount);
       pageOffset -= pageRange;
+      forward = false;
     }
 
     // Turn to next page
-    while (pageOffset <= -pageRange && currentIndex < view.getPageCount() - 1) {
-      currentIndex += 1;
+    while (pageOffset <= -pageRange && !isLastSpread(pageCount)) {
+      currentIndex += pagerLayout.getSpreadSize(currentIndex, pageCount);
       pageOffset += pageRange;
+      forward = true;
     }
 
     // Ensure page offset in range
@@ -390,7 +465,7 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
       float oldPageOffset = pageOffset;
       pageOffset = 0.0f;
       return oldPageOffset;
-    } else if (currentIndex == view.getPageCount() - 1 && pageOffset < 0.0f) {
+    } else if (isLastSpread(pageCount) && pageOffset < 0.0f) {
       float oldPageOffset = pageOffset;
       pageOffset = 0.0f;
       return oldPageOffset;
@@ -486,6 +561,55 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
     transformable.scale(x, y, factor, null);
   }
 
+  /**
+   * Scales the fit page with an animation.
+   */
+  @Override
+  public void animateScale(float x, float y, float scale) {
+    GalleryView view = getGalleryView();
+    if (pagerLayout == null || view == null || view.getChildCount() == 0) return;
+    Transformable transformable = getFitTransformer(view);
+    if (transformable == null) return;
+
+    transformable.animateScale(x, y, scale);
+  }
+
+  /**
+   * Scales the fit page to the next scale level with an animation.
+   */
+  @Override
+  public void animateNextScaleLevel(float x, float y) {
+    GalleryView view = getGalleryView();
+    if (pagerLayout == null || view == null || view.getChildCount() == 0) return;
+    Transformable transformable = getFitTransformer(view);
+    if (transformable == null) return;
+
+    transformable.animateNextScaleLevel(x, y);
+  }
+
+  /**
+   * Scales and scrolls the fit page with an animation to make the rect fit it.
+   */
+  @Override
+  public void animateScaleToRect(@NonNull RectF rect) {
+    GalleryView view = getGalleryView();
+    if (pagerLayout == null || view == null || view.getChildCount() == 0) return;
+    Transformable transformable = getFitTransformer(view);
+    if (transformable == null) return;
+
+    transformable.animateScaleToRect(rect);
+  }
+
+  /**
+   * Rotates pages clockwise by the degrees, in steps of 90 degrees.
+   *
+   * @throws IllegalStateException if the GalleryView it attached to is in layout.
+   */
+  public void rotate(int degrees) {
+    //noinspection WrongConstant
+    setContentRotation(((rotation + degrees) % 360 + 360) % 360);
+  }
+
   /*
    * Scrolls selected page directly.
    * Used by fling animation.
@@ -544,7 +668,7 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
     if (pageOffset >= turningThreshold && currentIndex > 0) {
       // Turn to previous page
       finalPageOffset = pageRange;
-    } else if (pageOffset <= -turningThreshold && currentIndex < pageCount - 1) {
+    } else if (pageOffset <= -turningThreshold && !isLastSpread(pageCount)) {
       // Turn to next page
       finalPageOffset = -pageRange;
     } else {
@@ -556,10 +680,24 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
     turningAnimation.animateToFinalPosition(finalPageOffset);
   }
 
+  @Override
+  public boolean isAnimating() {
+    return turningAnimation.isRunning() || flingAnimation.isRunning();
+  }
+
   @Override
   public void cancelAnimations() {
     turningAnimation.cancel();
     flingAnimation.cancel();
+
+    // Cancel the scale animation of the fit page
+    GalleryView view = getGalleryView();
+    if (pagerLayout != null && view != null && view.getChildCount() != 0) {
+      Transformable transformable = getFitTransformer(view);
+      if (transformable != null) {
+        transformable.cancelAnimations();
+      }
+    }
   }
 
   /**
@@ -591,6 +729,40 @@ public class PagerLayoutManager extends GalleryLayoutManager implements Transfor
      */
     void layoutPage(View page, float offset, @Position int position);
 
+    /**
+     * Returns the index of the first page of the spread which contains the page.
+     * A spread is the pages laid in one position together.
+     * Each page is a spread by default.
+     *
+     * @param index the index of the page
+     * @param pageCount the count of all pages
+     */
+    default int getSpreadStart(int index, int pageCount) {
+      return index;
+    }
+
+    /**
+     * Returns the count of pages in the spread.
+     *
+     * @param start the index of the first page of the spread
+     * @param pageCount the count of all pages
+     */
+    default int getSpreadSize(int start, int pageCount) {
+      return 1;
+    }
+
+    /**
+     * Lays a page of a spread.
+     *
+     * @param slot the index of the page in the spread
+     * @param spreadSize the count of pages in the spread
+     * @see #layoutPage(View, float, int)
+     */
+    default void layoutPage(View page, float offset, @Position int position, int slot,
+        int spreadSize) {
+      layoutPage(page, offset, position);
+    }
+
     /**
      * Updates the page offset. The new page offset must be in
      * [-getPageRange(), getPageRange()]. So it's not necessary to consume all
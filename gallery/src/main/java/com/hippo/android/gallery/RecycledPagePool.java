@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery;
+
+import android.annotation.SuppressLint;
+import android.support.annotation.NonNull;
+import android.util.SparseIntArray;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Stack;
+
+/**
+ * RecycledPagePool keeps unbound pages for reusing.
+ * Pages are grouped by type, each type has its own capacity.
+ * The pool also has a total capacity for all types.
+ *
+ * A RecycledPagePool can be shared by several GalleryViews, or by successive
+ * GalleryViews, via {@link GalleryView#setRecycledPagePool(RecycledPagePool)}.
+ * All of them should use adapters which create compatible pages for the same type.
+ *
+ * It counts page creating, reusing and destroying.
+ */
+public class RecycledPagePool {
+
+  public static final int DEFAULT_MAX_PAGES_EACH_TYPE = 5;
+  public static final int DEFAULT_MAX_PAGES = Integer.MAX_VALUE;
+
+  // Key is page type
+  @SuppressLint("UseSparseArrays")
+  private Map<Integer, Stack<GalleryPage>> cache = new HashMap<>();
+
+  // Key is page type, value is the max count of recycled pages
+  private SparseIntArray maxPages = new SparseIntArray();
+
+  private int maxTotalPages = DEFAULT_MAX_PAGES;
+  private int totalPages;
+
+  private int createCount;
+  private int reuseCount;
+  private int destroyCount;
+
+  /**
+   * Sets the max count of recycled pages for the type.
+   * Negative value is treated as {@code 0}.
+   *
+   * Redundant pages are destroyed when next page of the type is recycled.
+   */
+  public void setMaxRecycledPages(int type, int max) {
+    maxPages.put(type, Math.max(0, max));
+  }
+
+  /**
+   * Returns the max count of recycled pages for the type.
+   */
+  public int getMaxRecycledPages(int type) {
+    return maxPages.get(type, DEFAULT_MAX_PAGES_EACH_TYPE);
+  }
+
+  /**
+   * Sets the max count of recycled pages for all types.
+   * Negative value is treated as {@code 0}.
+   *
+   * If the pool is full, recycling a page evicts a page of the type
+   * which has the most recycled pages.
+   */
+  public void setMaxRecycledPages(int max) {
+    maxTotalPages = Math.max(0, max);
+  }
+
+  /**
+   * Returns the max count of recycled pages for all types.
+   */
+  public int getMaxRecycledPages() {
+    return maxTotalPages;
+  }
+
+  /**
+   * Returns the count of recycled pages of all types.
+   */
+  public int getRecycledPageCount() {
+    return totalPages;
+  }
+
+  /**
+   * Returns the count of recycled pages of the type.
+   */
+  public int getRecycledPageCount(int type) {
+    Stack<GalleryPage> stack = cache.get(type);
+    return stack != null ? stack.size() : 0;
+  }
+
+  /**
+   * Returns the count of pages created through this pool.
+   */
+  public int getCreateCount() {
+    return createCount;
+  }
+
+  /**
+   * Returns the count of pages reused from this pool.
+   */
+  public int getReuseCount() {
+    return reuseCount;
+  }
+
+  /**
+   * Returns the count of pages destroyed by this pool.
+   */
+  public int getDestroyCount() {
+    return destroyCount;
+  }
+
+  /**
+   * Resets create count, reuse count and destroy count.
+   */
+  public void resetCounts() {
+    createCount = 0;
+    reuseCount = 0;
+    destroyCount = 0;
+  }
+
+  private Stack<GalleryPage> getStack(int type) {
+    Stack<GalleryPage> stack = cache.get(type);
+    if (stack == null) {
+      stack = new Stack<>();
+      cache.put(type, stack);
+    }
+    return stack;
+  }
+
+  /*
+   * Returns the stack which has the most pages.
+   */
+  private Stack<GalleryPage> getLargestStack() {
+    Stack<GalleryPage> largest = null;
+    for (Stack<GalleryPage> stack : cache.values()) {
+      if (largest == null || stack.size() > largest.size()) {
+        largest = stack;
+      }
+    }
+    return largest;
+  }
+
+  /*
+   * Gets a recycled page of the type, or creates a new one.
+   */
+  @NonNull
+  GalleryPage obtain(GalleryView parent, GalleryAdapter adapter, int type) {
+    Stack<GalleryPage> stack = cache.get(type);
+    if (stack != null && !stack.empty()) {
+      reuseCount++;
+      totalPages--;
+      return stack.pop();
+    }
+
+    createCount++;
+    return adapter.createPage(parent, type);
+  }
+
+  /*
+   * Keeps the unbound page for reusing, or destroys it if the pool of the type is full.
+   * Pages evicted from other types are destroyed by the adapter too.
+   */
+  void recycle(GalleryAdapter adapter, GalleryPage page) {
+    Stack<GalleryPage> stack = getStack(page.getType());
+    int max = getMaxRecycledPages(page.getType());
+
+    // Destroy redundant pages
+    while (stack.size() > max) {
+      destroy(adapter, pop(stack));
+    }
+
+    // Make room in the whole pool
+    while (stack.size() < max && totalPages >= maxTotalPages) {
+      Stack<GalleryPage> largest = getLargestStack();
+      if (largest == null || largest.size() <= stack.size()) {
+        // Don't evict pages of the types which have fewer pages
+        break;
+      }
+      destroy(adapter, pop(largest));
+    }
+
+    if (stack.size() < max && totalPages < maxTotalPages) {
+      push(stack, page);
+    } else {
+      destroy(adapter, page);
+    }
+  }
+
+  /*
+   * Creates a page of the type to the pool if the pool of the type isn't full.
+   * Returns false if the pool of the type is full.
+   */
+  boolean prepare(GalleryView parent, GalleryAdapter adapter, int type) {
+    Stack<GalleryPage> stack = getStack(type);
+    if (stack.size() >= getMaxRecycledPages(type) || totalPages >= maxTotalPages) {
+      return false;
+    }
+
+    createCount++;
+    push(stack, adapter.createPage(parent, type));
+    return true;
+  }
+
+  /**
+   * Destroys all recycled pages by the adapter.
+   *
+   * A shared RecycledPagePool should be cleared by the owner when
+   * it's no longer used.
+   */
+  public void clear(@NonNull GalleryAdapter adapter) {
+    for (Stack<GalleryPage> stack : cache.values()) {
+      for (GalleryPage page : stack) {
+        destroy(adapter, page);
+      }
+    }
+    cache.clear();
+    totalPages = 0;
+  }
+
+  private void push(Stack<GalleryPage> stack, GalleryPage page) {
+    stack.push(page);
+    totalPages++;
+  }
+
+  private GalleryPage pop(Stack<GalleryPage> stack) {
+    totalPages--;
+    return stack.pop();
+  }
+
+  private void destroy(GalleryAdapter adapter, GalleryPage page) {
+    destroyCount++;
+    adapter.destroyPage(page);
+  }
+}
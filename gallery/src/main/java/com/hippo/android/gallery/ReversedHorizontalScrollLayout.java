@@ -185,8 +185,8 @@ public class ReversedHorizontalScrollLayout extends BaseScrollLayout {
     int increment = forward ? 1: -1;
     for (;;) {
       GalleryPage page = gallery.getPageAt(index);
-      if (page == null) {
-        // Reach the end of attached pages
+      if (page == null || page.isOffscreen()) {
+        // Reach the end of laid pages
         break;
       }
 
@@ -20,8 +20,12 @@ package com.hippo.android.gallery;
  * Created by Hippo on 2017/8/28.
  */
 
+import android.graphics.RectF;
 import android.support.animation.FlingAnimation;
 import android.support.animation.FloatPropertyCompat;
+import android.support.animation.SpringAnimation;
+import android.support.animation.SpringForce;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
 import android.view.View;
@@ -57,12 +61,36 @@ import java.util.List;
  * the size of the measure spec against layout direction. The root page view must
  * adjust its measured dimension against the size to achieved scaling.
  * </p>
+ *
+ * <p>
+ * If matrix scaling is enabled by {@link #setMatrixScaleEnabled(boolean)}, pages are
+ * transformed by a canvas matrix during scaling up, without measuring or laying.
+ * They are measured and laid once in {@link #finishScale()}. Scaling down below
+ * the laid scale reveals more pages, so pages are measured and laid as usual.
+ * </p>
  */
 public class ScrollLayoutManager extends GalleryLayoutManager {
 
   // SCALE_MIN MUST BE 1.0f
   private static final float SCALE_MIN = 1.0f;
-  private static final float SCALE_MAX = 3.0f;
+  private static final float DEFAULT_SCALE_MAX = 3.0f;
+  // The scale level between SCALE_MIN and max scale
+  private static final float SCALE_MIDDLE = 2.0f;
+
+  // The final value of scale animation progress
+  private static final float SCALE_PROGRESS_END = 1000.0f;
+
+  private float maxScale = DEFAULT_SCALE_MAX;
+
+  // Whether scaling is applied by matrix until finishScale()
+  private boolean matrixScaleEnabled;
+  // The matrix applied to laid pages, screen = laid * matrixScale + matrixTranslate
+  private float matrixScale = 1.0f;
+  private float matrixTranslateX = 0.0f;
+  private float matrixTranslateY = 0.0f;
+  // The focus of the last scaling
+  private float matrixFocusX;
+  private float matrixFocusY;
 
   // Anchor page index
   private int anchorIndex = 0;
@@ -83,6 +111,12 @@ public class ScrollLayoutManager extends GalleryLayoutManager {
   // The offset against scroll direction
   private float pageDeviate;
 
+  // The anchor of last layout, to detect reading direction
+  private int lastAnchorIndex = 0;
+  private float lastAnchorOffset = 0;
+  // True if reading from small index to large index
+  private boolean forward = true;
+
   private float[] temp = new float[4];
 
   private ScrollLayout scrollLayout;
@@ -103,6 +137,53 @@ public class ScrollLayoutManager extends GalleryLayoutManager {
   private float flingScaleY;
   private float lastFling;
   private FlingAnimation flingAnimation = new FlingAnimation(this, SCROLL_BY);
+  private float flingVelocity;
+
+  private static final FloatPropertyCompat<ScrollLayoutManager> SCALE_PROGRESS =
+      new FloatPropertyCompat<ScrollLayoutManager>("scaleProgress") {
+        @Override
+        public float getValue(ScrollLayoutManager slm) {
+          return slm.scaleProgress;
+        }
+        @Override
+        public void setValue(ScrollLayoutManager slm, float value) {
+          slm.setScaleProgress(value);
+        }
+      };
+  private SpringAnimation scaleAnimation =
+      new SpringAnimation(this, SCALE_PROGRESS, SCALE_PROGRESS_END);
+  private float scaleProgress;
+  private float scaleStart;
+  private float scaleEnd;
+  private float scaleFocusX;
+  private float scaleFocusY;
+  // The distance to scroll during scale animation
+  private float scaleScrollX;
+  private float scaleScrollY;
+
+  public ScrollLayoutManager() {
+    scaleAnimation.getSpring()
+        .setDampingRatio(SpringForce.DAMPING_RATIO_NO_BOUNCY)
+        .setStiffness(SpringForce.STIFFNESS_LOW);
+    scaleAnimation.addEndListener((animation, canceled, value, velocity) -> {
+      // Lay pages once at the end if matrix scaling
+      if (!canceled && getGalleryView() != null && !isInLayout()) {
+        finishScale();
+      }
+      notifyAnimationEnd();
+    });
+    flingAnimation.addUpdateListener((animation, value, velocity) ->
+        flingVelocity = (float) Math.hypot(velocity * flingScaleX, velocity * flingScaleY));
+    flingAnimation.addEndListener((animation, canceled, value, velocity) -> {
+      flingVelocity = 0.0f;
+      // Let the GalleryView upgrade lightly bound pages
+      GalleryView view = getGalleryView();
+      if (view != null && view.getLightBindVelocity() > 0.0f) {
+        view.requestLayout();
+      }
+      notifyAnimationEnd();
+    });
+  }
 
   /**
    * Sets the interval between pages.
@@ -117,6 +198,102 @@ public class ScrollLayoutManager extends GalleryLayoutManager {
     }
   }
 
+  /**
+   * Sets the max scale of pages. It can't be smaller than {@code 1.0f}.
+   * It's {@code 3.0f} by default.
+   */
+  public void setMaxScale(float maxScale) {
+    maxScale = Math.max(SCALE_MIN, maxScale);
+
+    if (this.maxScale != maxScale) {
+      this.maxScale = maxScale;
+      if (pageScale > maxScale) {
+        requestLayout();
+      }
+    }
+  }
+
+  /**
+   * Returns the max scale of pages.
+   */
+  public float getMaxScale() {
+    return maxScale;
+  }
+
+  /**
+   * Enables or disables matrix scaling.
+   *
+   * If it's enabled, {@link #scale(float, float, float, float[])} transforms laid pages
+   * by a canvas matrix instead of measuring and laying them, until {@link #finishScale()}.
+   * It's disabled by default.
+   */
+  public void setMatrixScaleEnabled(boolean enabled) {
+    if (matrixScaleEnabled != enabled) {
+      if (!enabled) {
+        finishScale();
+      }
+      matrixScaleEnabled = enabled;
+    }
+  }
+
+  /**
+   * Returns {@code true} if matrix scaling is enabled.
+   */
+  public boolean isMatrixScaleEnabled() {
+    return matrixScaleEnabled;
+  }
+
+  private boolean hasMatrix() {
+    return matrixScale != 1.0f || matrixTranslateX != 0.0f || matrixTranslateY != 0.0f;
+  }
+
+  private void resetMatrix() {
+    matrixScale = 1.0f;
+    matrixTranslateX = 0.0f;
+    matrixTranslateY = 0.0f;
+    GalleryView view = getGalleryView();
+    if (view != null) {
+      view.setContentTransform(1.0f, 0.0f, 0.0f);
+    }
+  }
+
+  /**
+   * Applies the matrix of matrix scaling to pages, measures and lays them.
+   * {@link GalleryGestureHandler} calls it when the gesture ends.
+   *
+   * @throws IllegalStateException if the GalleryView it attached to is in layout.
+   */
+  public void finishScale() {
+    if (isInLayout()) throw new IllegalStateException("Can't finish scale during layout");
+    if (!hasMatrix()) return;
+
+    float scale = matrixScale;
+    float translateX = matrixTranslateX;
+    float translateY = matrixTranslateY;
+    resetMatrix();
+
+    GalleryView view = getGalleryView();
+    if (view == null || view.getChildCount() == 0) return;
+
+    // Scale around the focus, then scroll the rest translation
+    float x = matrixFocusX;
+    float y = matrixFocusY;
+    if (scale != 1.0f) {
+      scaleBy(view, x, y, scale, null);
+    }
+    float dx = translateX - x * (1.0f - scale);
+    float dy = translateY - y * (1.0f - scale);
+    if (!Utils.floatEquals(dx, 0.0f) || !Utils.floatEquals(dy, 0.0f)) {
+      scroll(dx, dy, null);
+    }
+  }
+
+  @Override
+  void detach() {
+    resetMatrix();
+    super.detach();
+  }
+
   /**
    * Sets ScrollLayout to this ScrollLayoutManager.
    *
@@ -236,6 +413,7 @@ public class ScrollLayoutManager extends GalleryLayoutManager {
     if (anchorIndex != index) {
       anchorIndex = index;
       anchorOffset = 0.0f;
+      resetMatrix();
       cancelAnimations();
       requestLayout();
     }
@@ -259,7 +437,7 @@ public class ScrollLayoutManager extends GalleryLayoutManager {
     }
 
     // Ensure page scale and deviate in the range
-    pageScale = Utils.clamp(pageScale, SCALE_MIN, SCALE_MAX);
+    pageScale = Utils.clamp(pageScale, SCALE_MIN, maxScale);
     pageDeviate = Utils.clamp(pageDeviate, -(pageScale - 1.0f) * width, 0);
 
     scrollLayout.start(width, height, pageScale, pageDeviate, pageInterval);
@@ -302,6 +480,27 @@ public class ScrollLayoutManager extends GalleryLayoutManager {
      * 6. Update anchorIndex and anchorOffset
      */
     updateAnchor(pages);
+
+    /*
+     * 7. Pin offscreen pages in reading direction
+     */
+    updateReadingDirection();
+    pinOffscreenPages(view, pages.getFirst().getIndex(), pages.getLast().getIndex(), forward);
+  }
+
+  /*
+   * Anchor offset decreases if pages move forward.
+   */
+  private void updateReadingDirection() {
+    if (anchorIndex > lastAnchorIndex ||
+        (anchorIndex == lastAnchorIndex && anchorOffset < lastAnchorOffset)) {
+      forward = true;
+    } else if (anchorIndex < lastAnchorIndex ||
+        (anchorIndex == lastAnchorIndex && anchorOffset > lastAnchorOffset)) {
+      forward = false;
+    }
+    lastAnchorIndex = anchorIndex;
+    lastAnchorOffset = anchorOffset;
   }
 
   @Override
@@ -314,12 +513,27 @@ public class ScrollLayoutManager extends GalleryLayoutManager {
     GalleryView view = getGalleryView();
     if (view == null || view.getChildCount() == 0) return;
 
+    if (hasMatrix()) {
+      // Move the matrix, the bounds are fixed in finishScale()
+      matrixTranslateX += dx;
+      matrixTranslateY += dy;
+      view.setContentTransform(matrixScale, matrixTranslateX, matrixTranslateY);
+      return;
+    }
+
     GalleryPage first = view.getPageAt(0);
     GalleryPage last = null;
     int count = view.getPageCount();
     if (count > 0) {
       last = view.getPageAt(count - 1);
     }
+    // Offscreen pages aren't laid
+    if (first != null && first.isOffscreen()) {
+      first = null;
+    }
+    if (last != null && last.isOffscreen()) {
+      last = null;
+    }
 
     scrollLayout.scrollBy(anchorOffset, pageDeviate, dx, dy,
         first != null ? first.view : null, last != null ? last.view : null, temp);
@@ -343,8 +557,38 @@ public class ScrollLayoutManager extends GalleryLayoutManager {
     GalleryView view = getGalleryView();
     if (view == null || view.getChildCount() == 0) return;
 
+    if (matrixScaleEnabled) {
+      float newMatrixScale =
+          Utils.clamp(factor * matrixScale * pageScale, SCALE_MIN, maxScale) / pageScale;
+      if (newMatrixScale < 1.0f) {
+        // Scaling down reveals pages which are not laid, lay pages instead
+        finishScale();
+        scaleBy(view, x, y, factor, remain);
+        return;
+      }
+
+      float oldMatrixScale = matrixScale;
+      matrixScale = newMatrixScale;
+      float actualFactor = matrixScale / oldMatrixScale;
+      if (remain != null) {
+        remain[0] = factor / actualFactor;
+      }
+
+      // Scale the matrix around (x, y)
+      matrixTranslateX = (matrixTranslateX - x) * actualFactor + x;
+      matrixTranslateY = (matrixTranslateY - y) * actualFactor + y;
+      matrixFocusX = x;
+      matrixFocusY = y;
+      view.setContentTransform(matrixScale, matrixTranslateX, matrixTranslateY);
+      return;
+    }
+
+    scaleBy(view, x, y, factor, remain);
+  }
+
+  private void scaleBy(GalleryView view, float x, float y, float factor, @Nullable float[] remain) {
     float oldPageScale = pageScale;
-    pageScale = Utils.clamp(factor * pageScale, SCALE_MIN, SCALE_MAX);
+    pageScale = Utils.clamp(factor * pageScale, SCALE_MIN, maxScale);
     if (remain != null) {
       remain[0] = factor / (pageScale / oldPageScale);
     }
@@ -359,6 +603,104 @@ public class ScrollLayoutManager extends GalleryLayoutManager {
     }
   }
 
+  /*
+   * Returns the scale of pages, including the matrix of matrix scaling.
+   */
+  private float getCurrentScale() {
+    return pageScale * matrixScale;
+  }
+
+  /**
+   * Scales pages to the scale with an animation. The focus stays still if possible.
+   * If matrix scaling is enabled, pages are laid once at the end.
+   *
+   * @param x focus x
+   * @param y focus y
+   */
+  public void animateScale(float x, float y, float scale) {
+    startScaleAnimation(x, y, scale, 0.0f, 0.0f);
+  }
+
+  /**
+   * Scales pages to the next scale level with an animation, usually for double tap.
+   * The focus stays still if possible.
+   *
+   * @param x focus x
+   * @param y focus y
+   */
+  public void animateNextScaleLevel(float x, float y) {
+    float scale = getCurrentScale();
+    float nextScale;
+    if (scale < SCALE_MIDDLE - 0.01f && SCALE_MIDDLE < maxScale) {
+      nextScale = SCALE_MIDDLE;
+    } else if (scale < maxScale - 0.01f) {
+      nextScale = maxScale;
+    } else {
+      nextScale = SCALE_MIN;
+    }
+    animateScale(x, y, nextScale);
+  }
+
+  /**
+   * Scales and scrolls pages with an animation, to make the rect fit the GalleryView.
+   *
+   * @param rect the rect in the coordinate of the GalleryView
+   */
+  public void animateScaleToRect(@NonNull RectF rect) {
+    GalleryView view = getGalleryView();
+    if (view == null || rect.isEmpty()) return;
+
+    float factor = Math.min(view.getWidth() / rect.width(), view.getHeight() / rect.height());
+    // Scale around the center of the rect, and move it to the center of the GalleryView
+    startScaleAnimation(rect.centerX(), rect.centerY(), getCurrentScale() * factor,
+        view.getWidth() / 2.0f - rect.centerX(), view.getHeight() / 2.0f - rect.centerY());
+  }
+
+  private void startScaleAnimation(float x, float y, float scale, float dx, float dy) {
+    if (isInLayout()) throw new IllegalStateException("Can't start scale animation during layout");
+
+    GalleryView view = getGalleryView();
+    if (view == null || view.getChildCount() == 0) return;
+
+    cancelAnimations();
+
+    scaleStart = getCurrentScale();
+    scaleEnd = Utils.clamp(scale, SCALE_MIN, maxScale);
+    scaleFocusX = x;
+    scaleFocusY = y;
+    scaleScrollX = dx;
+    scaleScrollY = dy;
+    if (scaleStart == scaleEnd && dx == 0.0f && dy == 0.0f) return;
+
+    scaleProgress = 0.0f;
+    scaleAnimation.setStartValue(0.0f);
+    scaleAnimation.animateToFinalPosition(SCALE_PROGRESS_END);
+  }
+
+  private void setScaleProgress(float progress) {
+    float lastFraction = scaleProgress / SCALE_PROGRESS_END;
+    float fraction = progress / SCALE_PROGRESS_END;
+    scaleProgress = progress;
+
+    GalleryView view = getGalleryView();
+    if (view == null || view.getChildCount() == 0) return;
+
+    float scale = scaleStart * (float) Math.pow(scaleEnd / scaleStart, fraction);
+    float currentScale = getCurrentScale();
+    if (scale != currentScale) {
+      scale(scaleFocusX, scaleFocusY, scale / currentScale, null);
+    }
+
+    // The focus stays still during scaling, move it by scrolling
+    float dx = scaleScrollX * (fraction - lastFraction);
+    float dy = scaleScrollY * (fraction - lastFraction);
+    if (dx != 0.0f || dy != 0.0f) {
+      scroll(dx, dy, null);
+      scaleFocusX += dx;
+      scaleFocusY += dy;
+    }
+  }
+
   @Override
   public void fling(float velocityX, float velocityY) {
     GalleryView view = getGalleryView();
@@ -377,15 +719,27 @@ public class ScrollLayoutManager extends GalleryLayoutManager {
     }
 
     flingAnimation.cancel();
+    flingVelocity = (float) Math.hypot(velocity * flingScaleX, velocity * flingScaleY);
     flingAnimation.setStartVelocity(velocity)
         .setMinValue(-Float.MAX_VALUE)
         .setMaxValue(Float.MAX_VALUE)
         .start();
   }
 
+  @Override
+  public float getFlingVelocity() {
+    return flingVelocity;
+  }
+
+  @Override
+  public boolean isAnimating() {
+    return flingAnimation.isRunning() || scaleAnimation.isRunning();
+  }
+
   @Override
   public void cancelAnimations() {
     flingAnimation.cancel();
+    scaleAnimation.cancel();
   }
 
   /**
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery;
+
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+/**
+ * Position two pages side by side in one position, like a book.
+ * Spreads are turned by the wrapped {@link BasePagerLayout}.
+ *
+ * The first page could be a cover which is laid alone.
+ * Wide pages, checked by {@link WidePageChecker}, are laid alone too.
+ *
+ * Pages in a spread of two pages are not scrolled or scaled as {@link
+ * com.hippo.android.gallery.intf.Transformable}.
+ */
+public class SpreadPagerLayout implements PagerLayoutManager.PagerLayout {
+
+  private final BasePagerLayout pagerLayout;
+  private final boolean rightToLeft;
+
+  private boolean coverPage;
+  @Nullable
+  private WidePageChecker widePageChecker;
+
+  private int width;
+  private int height;
+
+  // The start of the spread for each page, rebuilt in each layout turn
+  private int[] spreadStarts = new int[0];
+  private int spreadPageCount = -1;
+
+  private Rect rect = new Rect();
+
+  /**
+   * Creates a SpreadPagerLayout.
+   *
+   * @param pagerLayout the PagerLayout to turn spreads,
+   *                    like {@link HorizontalPagerLayout} or {@link ReversedHorizontalPagerLayout}
+   * @param rightToLeft {@code true} to lay the first page of a spread on the right,
+   *                    usually for manga
+   */
+  public SpreadPagerLayout(@NonNull BasePagerLayout pagerLayout, boolean rightToLeft) {
+    this.pagerLayout = pagerLayout;
+    this.rightToLeft = rightToLeft;
+  }
+
+  /**
+   * Sets whether the first page is a cover which is laid alone.
+   * It's {@code false} by default.
+   */
+  public void setCoverPage(boolean coverPage) {
+    if (this.coverPage != coverPage) {
+      this.coverPage = coverPage;
+      spreadPageCount = -1;
+    }
+  }
+
+  /**
+   * Returns {@code true} if the first page is a cover which is laid alone.
+   */
+  public boolean isCoverPage() {
+    return coverPage;
+  }
+
+  /**
+   * Sets a WidePageChecker to find pages which should be laid alone.
+   * Request layout if the result of the WidePageChecker changes.
+   */
+  public void setWidePageChecker(@Nullable WidePageChecker checker) {
+    this.widePageChecker = checker;
+    spreadPageCount = -1;
+  }
+
+  /**
+   * Returns the WidePageChecker set in {@link #setWidePageChecker(WidePageChecker)}.
+   */
+  @Nullable
+  public WidePageChecker getWidePageChecker() {
+    return widePageChecker;
+  }
+
+  @Override
+  public void start(int width, int height, int interval) {
+    this.width = width;
+    this.height = height;
+    pagerLayout.start(width, height, interval);
+
+    // Pages might be changed, rebuild spreads
+    spreadPageCount = -1;
+  }
+
+  private boolean isWidePage(int index) {
+    return widePageChecker != null && widePageChecker.isWidePage(index);
+  }
+
+  private void buildSpreads(int pageCount) {
+    if (spreadPageCount == pageCount) {
+      return;
+    }
+    spreadPageCount = pageCount;
+
+    if (spreadStarts.length < pageCount) {
+      spreadStarts = new int[pageCount];
+    }
+
+    int i = 0;
+    while (i < pageCount) {
+      if ((i == 0 && coverPage) || i == pageCount - 1 || isWidePage(i) || isWidePage(i + 1)) {
+        spreadStarts[i] = i;
+        i += 1;
+      } else {
+        spreadStarts[i] = i;
+        spreadStarts[i + 1] = i;
+        i += 2;
+      }
+    }
+  }
+
+  @Override
+  public int getSpreadStart(int index, int pageCount) {
+    buildSpreads(pageCount);
+    return spreadStarts[index];
+  }
+
+  @Override
+  public int getSpreadSize(int start, int pageCount) {
+    buildSpreads(pageCount);
+    return start + 1 < pageCount && spreadStarts[start + 1] == start ? 2 : 1;
+  }
+
+  @Override
+  public int getPageRange() {
+    return pagerLayout.getPageRange();
+  }
+
+  @Override
+  public void layoutPage(View page, float offset, int position) {
+    layoutPage(page, offset, position, 0, 1);
+  }
+
+  @Override
+  public void layoutPage(View page, float offset, int position, int slot, int spreadSize) {
+    int column = rightToLeft ? spreadSize - 1 - slot : slot;
+    int left = width * column / spreadSize;
+    int right = width * (column + 1) / spreadSize;
+
+    GalleryTrace.beginSection("GalleryPage.measure");
+    page.measure(View.MeasureSpec.makeMeasureSpec(right - left, View.MeasureSpec.EXACTLY),
+        View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+    GalleryTrace.endSection();
+
+    Rect rect = this.rect;
+    rect.set(left, 0, right, height);
+    pagerLayout.offsetRect(rect, offset, position);
+
+    page.layout(rect.left, rect.top, rect.right, rect.bottom);
+    Utils.updateClipRegion(page, width, height);
+  }
+
+  @Override
+  public float scrollPage(float offset, float dx, float dy, float[] remain) {
+    return pagerLayout.scrollPage(offset, dx, dy, remain);
+  }
+
+  @Override
+  public void assignRemainOffset(float remainOffset, float[] remain) {
+    pagerLayout.assignRemainOffset(remainOffset, remain);
+  }
+
+  /**
+   * WidePageChecker finds pages which should be laid alone.
+   */
+  public interface WidePageChecker {
+
+    /**
+     * Returns {@code true} if the page is too wide to share a spread with another page.
+     */
+    boolean isWidePage(int index);
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery;
+
+import android.support.annotation.IntDef;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Iterator;
+import java.util.List;
+
+/*
+ * An adapter change notification, it maps old page indexes to new page indexes.
+ */
+final class UpdateOp {
+
+  @IntDef({CHANGE, INSERT, REMOVE, MOVE, SET_CHANGE})
+  @Retention(RetentionPolicy.SOURCE)
+  @interface Mode {}
+
+  static final int CHANGE = 0;
+  static final int INSERT = 1;
+  static final int REMOVE = 2;
+  static final int MOVE = 3;
+  static final int SET_CHANGE = 4;
+
+  @Mode
+  final int mode;
+  // The index start for CHANGE, INSERT and REMOVE, the from index for MOVE
+  int start;
+  // The item count for CHANGE, INSERT and REMOVE, the to index for MOVE
+  int count;
+
+  UpdateOp(@Mode int mode, int start, int count) {
+    this.mode = mode;
+    this.start = start;
+    this.count = count;
+  }
+
+  /*
+   * Returns true if the layout of the page with the old index might be changed.
+   */
+  boolean effected(int oldIndex) {
+    switch (mode) {
+      case CHANGE:
+      case REMOVE:
+        return oldIndex >= start && oldIndex < start + count;
+      case INSERT:
+        // Include the items next to the inserted items
+        return oldIndex >= start - 1 && oldIndex <= start + count;
+      case MOVE:
+        return oldIndex == start || oldIndex == count;
+      case SET_CHANGE:
+      default:
+        return true;
+    }
+  }
+
+  /*
+   * Returns INVALID_INDEX to invalid the page.
+   * Returns the oldIndex to keep the index.
+   */
+  int getNewIndex(int oldIndex) {
+    switch (mode) {
+      case CHANGE:
+        // Invalid pages whose index is in [start, start + count)
+        if (oldIndex >= start && oldIndex < start + count) {
+          return GalleryView.INVALID_INDEX;
+        } else {
+          return oldIndex;
+        }
+      case INSERT:
+        // Increases the index of pages, whose index is in [start, +∞), by count.
+        if (oldIndex >= start) {
+          return oldIndex + count;
+        } else {
+          return oldIndex;
+        }
+      case REMOVE:
+        // Decreases the index of pages, whose index is in [start + count, +∞), by count
+        if (oldIndex >= start + count) {
+          return oldIndex - count;
+          // Invalid pages whose index is in [start, start + count)
+        } else if (oldIndex >= start) {
+          return GalleryView.INVALID_INDEX;
+        } else {
+          return oldIndex;
+        }
+      case MOVE:
+        int fromIndex = start;
+        int toIndex = count;
+        if (oldIndex == fromIndex) {
+          return toIndex;
+        } else if (fromIndex < toIndex && oldIndex > fromIndex && oldIndex <= toIndex) {
+          return oldIndex - 1;
+        } else if (fromIndex > toIndex && oldIndex >= toIndex && oldIndex < fromIndex) {
+          return oldIndex + 1;
+        } else {
+          return oldIndex;
+        }
+      case SET_CHANGE:
+      default:
+        return GalleryView.INVALID_INDEX;
+    }
+  }
+
+  /*
+   * Returns the new selected index.
+   */
+  int getNewSelectedIndex(int selectedIndex) {
+    switch (mode) {
+      case INSERT:
+        return selectedIndex >= start ? selectedIndex + count : selectedIndex;
+      case REMOVE:
+        if (selectedIndex >= start + count) {
+          return selectedIndex - count;
+        } else if (selectedIndex >= start) {
+          return start;
+        } else {
+          return selectedIndex;
+        }
+      default:
+        return selectedIndex;
+    }
+  }
+
+  /*
+   * Merges the next op into this op if they could be applied as one op.
+   * Returns false if they can't be merged.
+   */
+  boolean merge(UpdateOp next) {
+    if (mode != next.mode) {
+      return false;
+    }
+
+    switch (mode) {
+      case CHANGE:
+        // Overlapped or adjacent ranges
+        if (next.start <= start + count && next.start + next.count >= start) {
+          int end = Math.max(start + count, next.start + next.count);
+          start = Math.min(start, next.start);
+          count = end - start;
+          return true;
+        }
+        return false;
+      case INSERT:
+        // The next inserted range is in or next to this inserted range
+        if (next.start >= start && next.start <= start + count) {
+          count += next.count;
+          return true;
+        }
+        return false;
+      case REMOVE:
+        // The next removed range is next to this removed range, or contains it
+        if (next.start == start) {
+          count += next.count;
+          return true;
+        } else if (next.start < start && next.start + next.count >= start) {
+          count += next.count;
+          start = next.start;
+          return true;
+        }
+        return false;
+      case SET_CHANGE:
+        return true;
+      case MOVE:
+      default:
+        return false;
+    }
+  }
+
+  /*
+   * Adds the op to the list, merges it with the last op if possible.
+   */
+  static void add(List<UpdateOp> ops, UpdateOp op) {
+    if (op.mode == SET_CHANGE) {
+      // All pages are invalid, only INSERT and REMOVE are still
+      // meaningful, they update the selected index
+      Iterator<UpdateOp> iterator = ops.iterator();
+      while (iterator.hasNext()) {
+        int mode = iterator.next().mode;
+        if (mode != INSERT && mode != REMOVE) {
+          iterator.remove();
+        }
+      }
+      ops.add(op);
+      return;
+    }
+
+    if (!ops.isEmpty()) {
+      UpdateOp last = ops.get(ops.size() - 1);
+      if (last.mode == SET_CHANGE) {
+        // Only INSERT and REMOVE still update the selected index
+        if (op.mode == CHANGE || op.mode == MOVE) {
+          return;
+        }
+      } else if (last.merge(op)) {
+        return;
+      }
+    }
+
+    ops.add(op);
+  }
+}
@@ -20,6 +20,7 @@ package com.hippo.android.gallery;
  * Created by Hippo on 2017/11/4.
  */
 
+import android.graphics.Canvas;
 import android.graphics.RectF;
 import android.view.View;
 import com.hippo.android.gallery.intf.Clippable;
@@ -194,6 +195,23 @@ public final class Utils {
         dY + (s.bottom - sY) * scaleY);
   }
 
+  /**
+   * Rotates the canvas clockwise around the center of the rect, in steps of 90 degrees.
+   * Stores the rect which covers {@code rect} after the rotation to {@code out}.
+   */
+  public static void rotateCanvas(Canvas canvas, RectF rect, int rotation, RectF out) {
+    float centerX = rect.centerX();
+    float centerY = rect.centerY();
+    if (rotation == 90 || rotation == 270) {
+      float halfWidth = rect.height() / 2;
+      float halfHeight = rect.width() / 2;
+      out.set(centerX - halfWidth, centerY - halfHeight, centerX + halfWidth, centerY + halfHeight);
+    } else {
+      out.set(rect);
+    }
+    canvas.rotate(rotation, centerX, centerY);
+  }
+
   /**
    * Returns {@code true} if these tow floats have opposite signs.
    */
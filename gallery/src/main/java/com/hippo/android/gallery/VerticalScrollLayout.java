@@ -183,8 +183,8 @@ public class VerticalScrollLayout extends BaseScrollLayout {
     int increment = forward ? 1: -1;
     for (;;) {
       GalleryPage page = gallery.getPageAt(index);
-      if (page == null) {
-        // Reach the end of attached pages
+      if (page == null || page.isOffscreen()) {
+        // Reach the end of laid pages
         break;
       }
 
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery.drawable;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import com.hippo.android.gallery.Utils;
+import com.hippo.android.gallery.intf.Accurate;
+
+/**
+ * AccurateDrawable makes any drawable with intrinsic width and height {@link Accurate}.
+ *
+ * For {@link BitmapDrawable}, only the visible region of the bitmap is drawn.
+ * For other drawables, like frames of animated images, the drawable is drawn
+ * in a canvas clipped to the visible region.
+ */
+public class AccurateDrawable extends DrawableWrapper implements Accurate {
+
+  private final Rect rect1 = new Rect();
+  private final RectF rectF1 = new RectF();
+  private final RectF rectF2 = new RectF();
+
+  @Override
+  public void draw(@NonNull Canvas canvas) {
+    throw new IllegalStateException("Please call draw(Canvas, RectF, RectF)!");
+  }
+
+  @Override
+  public void draw(@NonNull Canvas canvas, @NonNull RectF src, @NonNull RectF dst) {
+    Drawable drawable = getDrawable();
+    if (drawable == null) {
+      return;
+    }
+
+    int width = drawable.getIntrinsicWidth();
+    int height = drawable.getIntrinsicHeight();
+    if (width <= 0 || height <= 0) {
+      return;
+    }
+
+    Bitmap bitmap = drawable instanceof BitmapDrawable
+        ? ((BitmapDrawable) drawable).getBitmap() : null;
+    if (bitmap != null) {
+      // The intrinsic size of BitmapDrawable might be scaled by density
+      float scaleX = (float) bitmap.getWidth() / width;
+      float scaleY = (float) bitmap.getHeight() / height;
+      Rect source = rect1;
+      source.set((int) Math.floor(src.left * scaleX), (int) Math.floor(src.top * scaleY),
+          (int) Math.ceil(src.right * scaleX), (int) Math.ceil(src.bottom * scaleY));
+      if (!source.intersect(0, 0, bitmap.getWidth(), bitmap.getHeight())) {
+        return;
+      }
+
+      // Rounding out the source region extends the destination region, clip it
+      RectF target = rectF2;
+      target.set(source.left / scaleX, source.top / scaleY,
+          source.right / scaleX, source.bottom / scaleY);
+      Utils.mapRect(src, dst, target, target);
+
+      int saved = canvas.save();
+      canvas.clipRect(dst);
+      canvas.drawBitmap(bitmap, source, target, ((BitmapDrawable) drawable).getPaint());
+      canvas.restoreToCount(saved);
+    } else {
+      int saved = canvas.save();
+      canvas.clipRect(dst);
+      canvas.translate(dst.left, dst.top);
+      canvas.scale(dst.width() / src.width(), dst.height() / src.height());
+      canvas.translate(-src.left, -src.top);
+      drawable.setBounds(0, 0, width, height);
+      drawable.draw(canvas);
+      canvas.restoreToCount(saved);
+    }
+  }
+
+  @Override
+  public void draw(@NonNull Canvas canvas, @NonNull RectF src, @NonNull RectF dst, int rotation) {
+    if (rotation == ROTATION_0) {
+      draw(canvas, src, dst);
+    } else {
+      int saved = canvas.save();
+      Utils.rotateCanvas(canvas, dst, rotation, rectF1);
+      draw(canvas, src, rectF1);
+      canvas.restoreToCount(saved);
+    }
+  }
+}
@@ -28,6 +28,12 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.hippo.android.gallery.intf.Accurate;
 
+/**
+ * CutAccurateDrawable cuts an {@link Accurate} drawable.
+ *
+ * To cut a {@link TiledDrawable}, prefer {@link TiledDrawable#setRegion(Rect)}
+ * which keeps tiles out of the cut region from being decoded.
+ */
 public class CutAccurateDrawable extends CutDrawable implements Accurate {
 
   private RectF rectF1 = new RectF();
@@ -42,13 +48,18 @@ public class CutAccurateDrawable extends CutDrawable implements Accurate {
 
   @Override
   public void draw(@NonNull Canvas canvas, @NonNull RectF src, @NonNull RectF dst) {
+    draw(canvas, src, dst, ROTATION_0);
+  }
+
+  @Override
+  public void draw(@NonNull Canvas canvas, @NonNull RectF src, @NonNull RectF dst, int rotation) {
     Drawable drawable = getDrawable();
     Rect cut = getCut();
     if (drawable != null && !cut.isEmpty()) {
       RectF source = rectF1;
       source.set(src);
       source.offset(cut.left, cut.top);
-      ((Accurate) drawable).draw(canvas, source, dst);
+      ((Accurate) drawable).draw(canvas, source, dst, rotation);
     }
   }
 }
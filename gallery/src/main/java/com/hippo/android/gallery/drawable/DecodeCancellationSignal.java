@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery.drawable;
+
+import android.support.annotation.Nullable;
+
+/**
+ * DecodeCancellationSignal tells a running decode in
+ * {@link ImageRegionDecoder#decode(android.graphics.Rect, android.graphics.Bitmap.Config, int,
+ * DecodeCancellationSignal)} that the result is not needed anymore.
+ *
+ * It could be used in any thread.
+ */
+public final class DecodeCancellationSignal {
+
+  private boolean canceled;
+  @Nullable
+  private OnCancelListener listener;
+
+  /**
+   * Cancels the decode. The listener is called in current thread.
+   */
+  public void cancel() {
+    OnCancelListener listener;
+    synchronized (this) {
+      if (canceled) {
+        return;
+      }
+      canceled = true;
+      listener = this.listener;
+    }
+
+    if (listener != null) {
+      listener.onCancel();
+    }
+  }
+
+  /**
+   * Returns true if {@link #cancel()} is called.
+   */
+  public synchronized boolean isCanceled() {
+    return canceled;
+  }
+
+  /**
+   * Sets a listener to be called when the decode is canceled.
+   * If it's already canceled, the listener is called immediately.
+   */
+  public void setOnCancelListener(@Nullable OnCancelListener listener) {
+    synchronized (this) {
+      this.listener = listener;
+      if (!canceled) {
+        return;
+      }
+    }
+
+    if (listener != null) {
+      listener.onCancel();
+    }
+  }
+
+  public interface OnCancelListener {
+    void onCancel();
+  }
+}
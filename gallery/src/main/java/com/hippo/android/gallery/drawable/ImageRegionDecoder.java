@@ -48,6 +48,26 @@ public interface ImageRegionDecoder {
   @Nullable
   Bitmap decode(@NonNull Rect rect, Bitmap.Config preferredConfig, int sample);
 
+  /**
+   * Decodes a region for the image. Returns {@code null} if the signal is canceled.
+   *
+   * Implementations should stop decoding as soon as possible after the signal is canceled.
+   * The default implementation only checks the signal before and after decoding.
+   */
+  @Nullable
+  default Bitmap decode(@NonNull Rect rect, Bitmap.Config preferredConfig, int sample,
+      @Nullable DecodeCancellationSignal signal) {
+    if (signal != null && signal.isCanceled()) {
+      return null;
+    }
+    Bitmap bitmap = decode(rect, preferredConfig, sample);
+    if (bitmap != null && signal != null && signal.isCanceled()) {
+      recycle(bitmap);
+      return null;
+    }
+    return bitmap;
+  }
+
   /**
    * Recycles the bitmap generated in {@link #decode(Rect, Bitmap.Config, int)}.
    */
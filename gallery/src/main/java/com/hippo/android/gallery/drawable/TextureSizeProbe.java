@@ -0,0 +1,179 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery.drawable;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.opengl.GLES20;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
+
+/**
+ * TextureSizeProbe reads {@code GL_MAX_TEXTURE_SIZE} of the device
+ * and configures {@link TiledDrawable} with it.
+ *
+ * The value is read once in an EGL pbuffer context, off the main thread,
+ * and it's cached in SharedPreferences until the system is updated.
+ * Until then, or if EGL is unavailable, TiledDrawable is configured
+ * with the display size only.
+ */
+public final class TextureSizeProbe {
+  private TextureSizeProbe() {}
+
+  private static final String LOG_TAG = "TextureSizeProbe";
+
+  private static final String PREFERENCES_NAME = "com.hippo.android.gallery.texture_size";
+  private static final String KEY_MAX_TEXTURE_SIZE = "max_texture_size";
+  private static final String KEY_FINGERPRINT = "fingerprint";
+
+  /**
+   * The default tile size in {@link #configure(Context)}.
+   */
+  public static final int DEFAULT_TILE_SIZE = 1024;
+
+  private static final int EGL_OPENGL_ES2_BIT = 4;
+  private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+
+  /**
+   * Configures TiledDrawable with the max texture size of the device.
+   *
+   * The max texture size of TiledDrawable, which determines the preview size,
+   * is set to the larger dimension of the display. The tile size is set to
+   * {@link #DEFAULT_TILE_SIZE}. Both of them are limited by {@code GL_MAX_TEXTURE_SIZE}.
+   *
+   * If {@code GL_MAX_TEXTURE_SIZE} isn't cached, TiledDrawable is configured with
+   * the display size right now, and refined after probing on a background thread.
+   */
+  @MainThread
+  public static void configure(@NonNull Context context) {
+    final Context appContext = context.getApplicationContext();
+    final SharedPreferences preferences =
+        appContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+
+    int cached = preferences.getInt(KEY_MAX_TEXTURE_SIZE, 0);
+    if (cached > 0 && Build.FINGERPRINT.equals(preferences.getString(KEY_FINGERPRINT, null))) {
+      apply(appContext, cached);
+      return;
+    }
+
+    // Images decoded before probing use the display size
+    apply(appContext, Integer.MAX_VALUE);
+
+    final Handler handler = new Handler(Looper.getMainLooper());
+    new Thread(() -> {
+      final int size = probe();
+      if (size <= 0) {
+        // Keep the display size
+        return;
+      }
+      preferences.edit()
+          .putInt(KEY_MAX_TEXTURE_SIZE, size)
+          .putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+          .apply();
+      handler.post(() -> apply(appContext, size));
+    }, LOG_TAG).start();
+  }
+
+  private static void apply(Context context, int glMaxTextureSize) {
+    int displaySize = Math.max(context.getResources().getDisplayMetrics().widthPixels,
+        context.getResources().getDisplayMetrics().heightPixels);
+    TiledDrawable.setMaxTextureSize(Math.min(displaySize, glMaxTextureSize));
+    TiledDrawable.setTileSize(Math.min(DEFAULT_TILE_SIZE, glMaxTextureSize));
+  }
+
+  /**
+   * Reads {@code GL_MAX_TEXTURE_SIZE} in an EGL pbuffer context.
+   * Returns {@code 0} if EGL is unavailable.
+   */
+  @WorkerThread
+  public static int probe() {
+    try {
+      return probeInternal();
+    } catch (RuntimeException | UnsatisfiedLinkError e) {
+      Log.w(LOG_TAG, "Can't probe max texture size", e);
+      return 0;
+    }
+  }
+
+  private static int probeInternal() {
+    EGL10 egl = (EGL10) EGLContext.getEGL();
+    if (egl == null) {
+      return 0;
+    }
+
+    EGLDisplay display = egl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
+    if (display == EGL10.EGL_NO_DISPLAY || !egl.eglInitialize(display, new int[2])) {
+      return 0;
+    }
+
+    EGLContext context = EGL10.EGL_NO_CONTEXT;
+    EGLSurface surface = EGL10.EGL_NO_SURFACE;
+    try {
+      int[] configAttributes = {
+          EGL10.EGL_SURFACE_TYPE, EGL10.EGL_PBUFFER_BIT,
+          EGL10.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+          EGL10.EGL_NONE
+      };
+      EGLConfig[] configs = new EGLConfig[1];
+      int[] configCount = new int[1];
+      if (!egl.eglChooseConfig(display, configAttributes, configs, 1, configCount)
+          || configCount[0] == 0) {
+        return 0;
+      }
+
+      int[] contextAttributes = {EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE};
+      context = egl.eglCreateContext(display, configs[0], EGL10.EGL_NO_CONTEXT, contextAttributes);
+      if (context == EGL10.EGL_NO_CONTEXT) {
+        return 0;
+      }
+
+      int[] surfaceAttributes = {EGL10.EGL_WIDTH, 1, EGL10.EGL_HEIGHT, 1, EGL10.EGL_NONE};
+      surface = egl.eglCreatePbufferSurface(display, configs[0], surfaceAttributes);
+      if (surface == EGL10.EGL_NO_SURFACE) {
+        return 0;
+      }
+
+      if (!egl.eglMakeCurrent(display, surface, surface, context)) {
+        return 0;
+      }
+
+      int[] size = new int[1];
+      GLES20.glGetIntegerv(GLES20.GL_MAX_TEXTURE_SIZE, size, 0);
+      return size[0];
+    } finally {
+      egl.eglMakeCurrent(display,
+          EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
+      if (surface != EGL10.EGL_NO_SURFACE) {
+        egl.eglDestroySurface(display, surface);
+      }
+      if (context != EGL10.EGL_NO_CONTEXT) {
+        egl.eglDestroyContext(display, context);
+      }
+      // The default display is shared with the renderer, don't terminate it
+    }
+  }
+}
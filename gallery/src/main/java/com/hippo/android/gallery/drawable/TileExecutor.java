@@ -0,0 +1,234 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery.drawable;
+
+import android.os.Process;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TileExecutor executes tile decode tasks of TiledDrawables.
+ * Each {@link com.hippo.android.gallery.GalleryView} owns one.
+ *
+ * Threads are created when needed, and they exit after being idle for a while.
+ * When it's paused, new tasks wait until it's resumed, and running TiledDrawable
+ * decode tasks stop after decoding the current tile. When it's shut down,
+ * running and waiting tasks are dropped, it could still be used after that.
+ *
+ * While the GalleryView is interacting, TiledDrawables defer decoding full resolution
+ * tiles, until the interaction ends.
+ */
+public class TileExecutor implements Executor {
+
+  private static final long KEEP_ALIVE_SECONDS = 3;
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final int threadCount;
+  private final int threadPriority;
+
+  private ThreadPoolExecutor executor;
+  private boolean paused;
+  private final List<Runnable> pausedTasks = new ArrayList<>();
+
+  // Accessed in main thread
+  private boolean interacting;
+  private final List<TiledDrawable> deferredDrawables = new ArrayList<>();
+
+  /**
+   * Creates a TileExecutor with one thread of background priority.
+   */
+  public TileExecutor() {
+    this(1, Process.THREAD_PRIORITY_BACKGROUND);
+  }
+
+  /**
+   * Creates a TileExecutor.
+   *
+   * @param threadCount the max count of threads
+   * @param threadPriority the priority of threads, a Linux priority level,
+   *                       like {@link Process#THREAD_PRIORITY_BACKGROUND}
+   */
+  public TileExecutor(int threadCount, int threadPriority) {
+    this.threadCount = Math.max(1, threadCount);
+    this.threadPriority = threadPriority;
+  }
+
+  /**
+   * Returns the max count of threads.
+   */
+  public int getThreadCount() {
+    return threadCount;
+  }
+
+  /**
+   * Returns the priority of threads.
+   */
+  public int getThreadPriority() {
+    return threadPriority;
+  }
+
+  private ThreadPoolExecutor createExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        threadCount, threadCount, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        runnable -> new Thread(() -> {
+          Process.setThreadPriority(threadPriority);
+          runnable.run();
+        }, "TileExecutor #" + THREAD_COUNT.incrementAndGet()));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  @Override
+  public synchronized void execute(@NonNull Runnable command) {
+    if (paused) {
+      pausedTasks.add(command);
+      return;
+    }
+
+    if (executor == null) {
+      executor = createExecutor();
+    }
+    executor.execute(command);
+  }
+
+  /**
+   * Returns true if the TileExecutor is paused.
+   */
+  public synchronized boolean isPaused() {
+    return paused;
+  }
+
+  /**
+   * Pauses the TileExecutor. New tasks wait until {@link #resume()}.
+   */
+  public synchronized void pause() {
+    paused = true;
+  }
+
+  /**
+   * Resumes the TileExecutor. Waiting tasks are executed.
+   */
+  public void resume() {
+    List<Runnable> tasks;
+    synchronized (this) {
+      if (!paused) {
+        return;
+      }
+      paused = false;
+      tasks = new ArrayList<>(pausedTasks);
+      pausedTasks.clear();
+    }
+
+    for (Runnable task : tasks) {
+      execute(task);
+    }
+  }
+
+  /**
+   * Drops waiting tasks and interrupts running tasks.
+   * Running TiledDrawable decode tasks stop after decoding the current tile.
+   * Decoders of dropped tasks are recycled in a background thread.
+   */
+  @MainThread
+  public void shutdown() {
+    List<Runnable> tasks;
+    synchronized (this) {
+      tasks = new ArrayList<>(pausedTasks);
+      pausedTasks.clear();
+      if (executor != null) {
+        tasks.addAll(executor.shutdownNow());
+        executor = null;
+      }
+    }
+
+    List<ImageRegionDecoder> decoders = new ArrayList<>();
+    for (Runnable task : tasks) {
+      if (task instanceof DrainableTask) {
+        ImageRegionDecoder decoder = ((DrainableTask) task).drain();
+        if (decoder != null) {
+          decoders.add(decoder);
+        }
+      }
+    }
+    if (!decoders.isEmpty()) {
+      // decoder.recycle() might block the main thread
+      new Thread(() -> {
+        for (ImageRegionDecoder decoder : decoders) {
+          decoder.recycle();
+        }
+      }, "TileExecutor recycle").start();
+    }
+
+    // Deferred TiledDrawables might be recycled, don't hold them
+    deferredDrawables.clear();
+  }
+
+  /**
+   * Sets whether the GalleryView is interacting, like touching or animating.
+   * {@link com.hippo.android.gallery.GalleryView} calls it.
+   * TiledDrawables which deferred decoding are redrawn once the interaction ends.
+   */
+  @MainThread
+  public void setInteracting(boolean interacting) {
+    if (this.interacting != interacting) {
+      this.interacting = interacting;
+      if (!interacting) {
+        for (TiledDrawable drawable : deferredDrawables) {
+          drawable.invalidateSelf();
+        }
+        deferredDrawables.clear();
+      }
+    }
+  }
+
+  /**
+   * Returns {@code true} if the GalleryView is interacting.
+   */
+  @MainThread
+  public boolean isInteracting() {
+    return interacting;
+  }
+
+  /*
+   * Redraws the TiledDrawable once the interaction ends.
+   */
+  @MainThread
+  void defer(TiledDrawable drawable) {
+    if (!deferredDrawables.contains(drawable)) {
+      deferredDrawables.add(drawable);
+    }
+  }
+
+  /*
+   * A task which must clean up if it's dropped.
+   * drain() returns a decoder to recycle off the main thread, or null.
+   */
+  interface DrainableTask extends Runnable {
+    @Nullable
+    ImageRegionDecoder drain();
+  }
+}
@@ -28,17 +28,28 @@ import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.IntDef;
 import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 import android.util.SparseArray;
+import com.hippo.android.gallery.GalleryTrace;
+import com.hippo.android.gallery.MemoryPressureCoordinator;
 import com.hippo.android.gallery.Utils;
 import com.hippo.android.gallery.intf.Accurate;
+import com.hippo.android.gallery.intf.Interactive;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.Executor;
 
 /**
@@ -47,37 +58,120 @@ import java.util.concurrent.Executor;
  * It can only be used with {@link TransformDrawable}, {@link ClipDrawable}, or
  * {@link CutAccurateDrawable}.
  */
-public class TiledDrawable extends Drawable implements Accurate {
+public class TiledDrawable extends Drawable implements Accurate, Interactive {
 
   private static final String LOG_TAG = "TiledDrawable";
 
+  @IntDef({SAMPLE_QUALITY_FULL, SAMPLE_QUALITY_EXACT})
+  @Retention(RetentionPolicy.SOURCE)
+  public @interface SampleQuality {}
+
+  /**
+   * Tiles are decoded at the power-of-2 sample, up to twice the display density.
+   */
+  public static final int SAMPLE_QUALITY_FULL = 0;
+  /**
+   * Tiles are downscaled after decoding to about the display density,
+   * in steps of 1/8. It saves memory and fill rate, but costs more CPU time.
+   */
+  public static final int SAMPLE_QUALITY_EXACT = 1;
+
+  // Tile bitmaps are scaled in steps of 1 / SCALE_STEPS
+  private static final int SCALE_STEPS = 8;
+
+  private static final String TRACE_DECODE_TILE = "TiledDrawable.decodeTile";
+  private static final String TRACE_TILE = "TiledDrawable.tile";
+
+  // The cookie for the next async trace section of tile
+  private static int nextTraceCookie;
+
   private static final Bitmap.Config DEFAULT_CONFIG = Bitmap.Config.ARGB_8888;
 
-  private static int MAX_TEXTURE_SIZE = 1024;
+  private static volatile int MAX_TEXTURE_SIZE = 1024;
+  // Non-positive value means tile size follows max texture size
+  private static volatile int TILE_SIZE = 0;
+
+  private static int MAX_PENDING_TILES = 16;
+  private static int MAX_GLOBAL_PENDING_TILES = 64;
+
+  @Nullable
+  private static PerformanceListener performanceListener;
+
+  private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+  // Guards pending tile queues, the states of tiles and workerRunning
+  private static final Object QUEUE_LOCK = new Object();
+  // The pending tiles of all TiledDrawables, the oldest first
+  private static final ArrayDeque<Tile> GLOBAL_PENDING_TILES = new ArrayDeque<>();
+  // The tiles dropped under QUEUE_LOCK, handled after releasing it, only in main thread
+  private static final List<Tile> DROPPED_TILES = new ArrayList<>();
+  // TiledDrawables to draw again once a tile is decoded, only in main thread
+  private static final List<TiledDrawable> RETRY_DRAWABLES = new ArrayList<>();
+
+  // All TiledDrawables which are not recycled, for trimming memory
+  private static final Set<TiledDrawable> DRAWABLES =
+      Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+  private static final int TILE_IDLE = 0;
+  private static final int TILE_PENDING = 1;
+  private static final int TILE_DECODING = 2;
 
   private final ImageRegionDecoder decoder;
   private final Bitmap preview;
+  // The region of the image covered by the preview
+  private final Rect previewRegion;
   private final int previewSample;
-  private final Executor executor;
+  private volatile Executor executor;
   private final boolean shared;
 
   private final SparseArray<List<Tile>> tilesMap;
   private final Matrix matrix;
 
-  private final int width;
-  private final int height;
+  private final int tileSize;
+  // The region of the image to draw, tiles only cover it
+  private final Rect region = new Rect();
+  private int width;
+  private int height;
 
   private int currentSample;
+  // The scale of tile bitmaps for current sample, in steps of 1 / SCALE_STEPS
+  private int currentScale = SCALE_STEPS;
+  @SampleQuality
+  private int sampleQuality = SAMPLE_QUALITY_FULL;
+  // No full resolution tile is decoded while interacting
+  private boolean interacting;
   private boolean recycled;
 
+  // The pending tiles of this TiledDrawable, the oldest first
+  private final ArrayDeque<Tile> pendingTiles = new ArrayDeque<>();
+  // Whether a DecodeWorker is running for this TiledDrawable
+  private boolean workerRunning;
+  private int droppedTileCount;
+  // True if it's in RETRY_DRAWABLES
+  private boolean retryDroppedTiles;
+
+  // The center of the visible source rect, to find the furthest pending tile
+  private float visibleCenterX;
+  private float visibleCenterY;
+
   private final RectF rectF1 = new RectF();
   private final RectF rectF2 = new RectF();
+  private final RectF rectF3 = new RectF();
+  private final RectF regionSrc = new RectF();
+  private final RectF unrotatedDst = new RectF();
   private final List<Tile> list1 = new ArrayList<>();
+  private final List<Tile> list2 = new ArrayList<>();
+  // Sorts tiles from the nearest to the furthest
+  private final Comparator<Tile> distanceComparator =
+      (t1, t2) -> Float.compare(getDistanceToVisibleCenter(t1), getDistanceToVisibleCenter(t2));
 
   /**
    * Sets the max texture size for all TiledDrawables.
    *
-   * It determines the preview size and tile size.
+   * It determines the preview size, and the tile size if it isn't set
+   * in {@link #setTileSize(int)}.
+   *
+   * @see TextureSizeProbe
    */
   public static void setMaxTextureSize(int size) {
     MAX_TEXTURE_SIZE = size;
@@ -86,16 +180,117 @@ public class TiledDrawable extends Drawable implements Accurate {
   /**
    * Returns the max texture size.
    *
-   * It determines the preview size and tile size.
+   * It determines the preview size, and the tile size if it isn't set
+   * in {@link #setTileSize(int)}.
    */
   public static int getMaxTextureSize() {
     return MAX_TEXTURE_SIZE;
   }
 
-  private static int previewSample(ImageRegionDecoder decoder) {
+  /**
+   * Sets the tile size for TiledDrawables created after it.
+   * It's limited by the max texture size.
+   *
+   * Non-positive value makes the tile size the same as the max texture size.
+   * It's the default value.
+   */
+  public static void setTileSize(int size) {
+    TILE_SIZE = size;
+  }
+
+  /**
+   * Returns the tile size for new TiledDrawables.
+   */
+  public static int getTileSize() {
+    int maxTextureSize = MAX_TEXTURE_SIZE;
+    int tileSize = TILE_SIZE;
+    return tileSize > 0 ? Math.min(tileSize, maxTextureSize) : maxTextureSize;
+  }
+
+  /**
+   * Sets a PerformanceListener for all TiledDrawables to receive tile metrics.
+   * Metrics are not collected if no PerformanceListener is set.
+   */
+  @MainThread
+  public static void setPerformanceListener(@Nullable PerformanceListener listener) {
+    performanceListener = listener;
+  }
+
+  /**
+   * Returns the PerformanceListener set in {@link #setPerformanceListener(PerformanceListener)}.
+   */
+  @Nullable
+  public static PerformanceListener getPerformanceListener() {
+    return performanceListener;
+  }
+
+  /**
+   * Sets the max count of pending tiles for each TiledDrawable and for all TiledDrawables.
+   * If a TiledDrawable has too many pending tiles, the tile furthest from the visible
+   * region is dropped. If all TiledDrawables have too many pending tiles, the oldest
+   * tile is dropped. Dropped tiles are requested again once
+   * another tile is decoded if they are still visible.
+   */
+  public static void setMaxPendingTiles(int maxPendingTiles, int maxGlobalPendingTiles) {
+    synchronized (QUEUE_LOCK) {
+      MAX_PENDING_TILES = Math.max(1, maxPendingTiles);
+      MAX_GLOBAL_PENDING_TILES = Math.max(1, maxGlobalPendingTiles);
+    }
+  }
+
+  /**
+   * Returns the count of pending tiles of all TiledDrawables.
+   */
+  public static int getGlobalPendingTileCount() {
+    synchronized (QUEUE_LOCK) {
+      return GLOBAL_PENDING_TILES.size();
+    }
+  }
+
+  /**
+   * Drops the memory of the tier for all TiledDrawables.
+   *
+   * {@link MemoryPressureCoordinator#TIER_PENDING_TILES} drops pending tiles
+   * which are not visible. {@link MemoryPressureCoordinator#TIER_SAMPLE_LEVELS}
+   * drops tiles of the sample levels which are not drawn now.
+   * Visible tiles are requested again in next drawing.
+   *
+   * Register it to {@link MemoryPressureCoordinator} as {@code TiledDrawable::trimMemory}.
+   */
+  @MainThread
+  public static void trimMemory(@MemoryPressureCoordinator.Tier int tier) {
+    if (tier == MemoryPressureCoordinator.TIER_PENDING_TILES) {
+      synchronized (QUEUE_LOCK) {
+        for (Tile tile : new ArrayList<>(GLOBAL_PENDING_TILES)) {
+          // Not a drop for too many pending tiles, don't report it
+          if (!tile.visible) {
+            removePendingTile(tile);
+          }
+        }
+      }
+    } else if (tier == MemoryPressureCoordinator.TIER_SAMPLE_LEVELS) {
+      List<TiledDrawable> drawables;
+      synchronized (DRAWABLES) {
+        drawables = new ArrayList<>(DRAWABLES);
+      }
+      for (TiledDrawable drawable : drawables) {
+        drawable.trimSampleLevels();
+      }
+    }
+  }
+
+  /**
+   * Returns the sample of the preview for this ImageRegionDecoder.
+   * The preview should be about the size of the image divided by the sample.
+   */
+  public static int getPreviewSample(ImageRegionDecoder decoder) {
+    return getPreviewSample(decoder.getWidth(), decoder.getHeight());
+  }
+
+  private static int getPreviewSample(int width, int height) {
     float maxSize = (float) MAX_TEXTURE_SIZE;
-    int widthScale = (int) Math.ceil((float) decoder.getWidth() / maxSize);
-    int heightScale = (int) Math.ceil((float) decoder.getHeight() / maxSize);
+    int widthScale = (int) Math.ceil((float) width / maxSize);
+    int heightScale = (int) Math.ceil((float) height / maxSize);
     return Math.max(1, Math.max(Utils.nextPow2(widthScale), Utils.nextPow2(heightScale)));
   }
 
@@ -106,18 +301,51 @@ public class TiledDrawable extends Drawable implements Accurate {
    */
   @Nullable
   public static Bitmap generatePreview(ImageRegionDecoder decoder) {
-    Rect rect = new Rect(0, 0, decoder.getWidth(), decoder.getHeight());
-    int sample = previewSample(decoder);
+    return generatePreview(decoder, null);
+  }
+
+  /**
+   * Generates preview for the region of this ImageRegionDecoder.
+   * {@code null} region means the whole image.
+   *
+   * Pass the preview and the region to
+   * {@link #TiledDrawable(ImageRegionDecoder, Rect, Bitmap, Executor, boolean)}.
+   */
+  @Nullable
+  public static Bitmap generatePreview(ImageRegionDecoder decoder, @Nullable Rect region) {
+    Rect rect = clampRegion(decoder, region);
+    if (rect.isEmpty()) {
+      return null;
+    }
+    int sample = getPreviewSample(rect.width(), rect.height());
     return decoder.decode(rect, DEFAULT_CONFIG, sample);
   }
 
+  /*
+   * Returns the sample of the preview from its size. The max texture size might be
+   * changed after the preview was generated, like for a cached preview.
+   */
+  private static int calculatePreviewSample(Rect region, Bitmap preview) {
+    float scale = Math.max((float) region.width() / preview.getWidth(),
+        (float) region.height() / preview.getHeight());
+    return Math.max(1, Utils.prevPow2(Math.round(scale)));
+  }
+
+  private static Rect clampRegion(ImageRegionDecoder decoder, @Nullable Rect region) {
+    Rect rect = new Rect(0, 0, decoder.getWidth(), decoder.getHeight());
+    if (region != null && !rect.intersect(region)) {
+      rect.setEmpty();
+    }
+    return rect;
+  }
+
   /**
    * Create a TiledDrawable.
    *
    * @param decoder the decoder to decode the image
    * @param executor The executor to execute decode tasks.
-   *                 Usually, ImageRegionDecoder can't be used parallel.
-   *                 One serial executor for one TiledDrawable should be enough.
+   *                 One TiledDrawable decodes tiles one by one in one task,
+   *                 so the executor could be shared by TiledDrawables.
    * @param shared If it's true, the decoder and the preview will not be recycled
    *               in {@link #recycle()}, and the decoder and the preview must not be
    *               recycled before {@link #recycle()} called. If it's false,
@@ -130,20 +358,97 @@ public class TiledDrawable extends Drawable implements Accurate {
       @NonNull Bitmap preview,
       @NonNull Executor executor,
       boolean shared
+  ) {
+    this(decoder, null, preview, executor, shared);
+  }
+
+  /**
+   * Create a TiledDrawable which only draws a region of the image.
+   * The preview and tiles only cover the region, other parts of the image are never decoded.
+   *
+   * @param region the region of the image, {@code null} means the whole image
+   * @param preview the preview generated in {@link #generatePreview(ImageRegionDecoder, Rect)}
+   *                with the same region
+   * @see #TiledDrawable(ImageRegionDecoder, Bitmap, Executor, boolean)
+   */
+  public TiledDrawable(
+      @NonNull ImageRegionDecoder decoder,
+      @Nullable Rect region,
+      @NonNull Bitmap preview,
+      @NonNull Executor executor,
+      boolean shared
   ) {
     this.decoder = decoder;
     this.preview = preview;
-    this.previewSample = previewSample(decoder);
+    this.previewRegion = clampRegion(decoder, region);
+    this.previewSample = calculatePreviewSample(previewRegion, preview);
     this.executor = executor;
     this.shared = shared;
 
     tilesMap = new SparseArray<>();
     matrix = new Matrix();
 
-    width = decoder.getWidth();
-    height = decoder.getHeight();
+    tileSize = getTileSize();
+    this.region.set(previewRegion);
+    width = this.region.width();
+    height = this.region.height();
+
+    initTileMap(tileSize);
+
+    DRAWABLES.add(this);
+  }
+
+  /**
+   * Restricts this TiledDrawable to a region of the image, in image coordinates.
+   * The region is clamped to the region of the preview. {@code null} means
+   * the whole region of the preview.
+   *
+   * The size of this drawable becomes the size of the region. Tiles only cover
+   * the region, so TiledDrawables sharing a decoder could each draw a part of
+   * the image, like the two halves of a spread, without decoding tiles of the other parts.
+   *
+   * The preview is kept as it is, only the part in the region is drawn.
+   * To get a preview which only covers the region, generate it with
+   * {@link #generatePreview(ImageRegionDecoder, Rect)} and pass it to
+   * {@link #TiledDrawable(ImageRegionDecoder, Rect, Bitmap, Executor, boolean)}.
+   */
+  @MainThread
+  public void setRegion(@Nullable Rect region) {
+    Rect rect = new Rect(previewRegion);
+    if (region != null && !rect.intersect(region)) {
+      rect.setEmpty();
+    }
+    if (recycled || this.region.equals(rect)) {
+      return;
+    }
+
+    for (int i = 0, len = tilesMap.size(); i < len; i++) {
+      for (Tile tile : tilesMap.valueAt(i)) {
+        cancelDecode(tile);
+        if (tile.bitmap != null) {
+          decoder.recycle(tile.bitmap);
+          tile.bitmap = null;
+        }
+      }
+    }
+    tilesMap.clear();
+
+    this.region.set(rect);
+    width = rect.width();
+    height = rect.height();
+    if (!rect.isEmpty()) {
+      initTileMap(tileSize);
+    }
+
+    invalidateSelf();
+  }
 
-    initTileMap(MAX_TEXTURE_SIZE);
+  /**
+   * Returns the region of the image drawn by this TiledDrawable.
+   */
+  @NonNull
+  public Rect getRegion() {
+    return new Rect(region);
   }
 
   private void initTileMap(int maxTileSize) {
@@ -161,17 +466,28 @@ public class TiledDrawable extends Drawable implements Accurate {
       // Calculate tile count among x and y axis
       int xTiles = Utils.ceilDiv(width, maxTileMappingSize);
       int yTiles = Utils.ceilDiv(height, maxTileMappingSize);
+      int left = region.left;
+      int top = region.top;
+
+      // Tiles of the coarser sample, each of them covers up to 2x2 tiles of this sample
+      List<Tile> parents = tilesMap.get(sample * 2);
+      int parentYTiles = Utils.ceilDiv(height, maxTileMappingSize * 2);
 
       List<Tile> tiles = new ArrayList<>(xTiles * yTiles);
       for (int x = 0; x < xTiles; x++) {
         for (int y = 0; y < yTiles; y++) {
           Tile tile = new Tile();
           tile.drawable = this;
+          tile.sample = sample;
+          if (parents != null) {
+            tile.parent = parents.get((x / 2) * parentYTiles + y / 2);
+          }
+          // Tile rects are in image coordinates
           tile.rect = new Rect(
-              x * maxTileMappingSize,
-              y * maxTileMappingSize,
-              x == xTiles - 1 ? width : (x + 1) * maxTileMappingSize,
-              y == yTiles - 1 ? height : (y + 1) * maxTileMappingSize
+              left + x * maxTileMappingSize,
+              top + y * maxTileMappingSize,
+              x == xTiles - 1 ? region.right : left + (x + 1) * maxTileMappingSize,
+              y == yTiles - 1 ? region.bottom : top + (y + 1) * maxTileMappingSize
           );
           tiles.add(tile);
         }
@@ -188,14 +504,18 @@ public class TiledDrawable extends Drawable implements Accurate {
     if (recycled) {
       return;
     }
-    recycled = true;
+    boolean recycleDecoder;
+    synchronized (QUEUE_LOCK) {
+      // Decide it with the DecodeWorker under the lock, or both might recycle the decoder.
+      // The running DecodeWorker recycles the decoder after decoding.
+      recycled = true;
+      recycleDecoder = !shared && !workerRunning;
+    }
+    DRAWABLES.remove(this);
 
     for (int i = 0, len = tilesMap.size(); i < len; i++) {
       for (Tile tile : tilesMap.valueAt(i)) {
-        tile.drawable = null;
-        if (tile.task != null) {
-          tile.task.cancel(false);
-        }
+        cancelDecode(tile);
         if (tile.bitmap != null) {
           tile.bitmap.recycle();
           tile.bitmap = null;
@@ -204,13 +524,93 @@ public class TiledDrawable extends Drawable implements Accurate {
     }
     tilesMap.clear();
 
-    if (!shared) {
+    if (recycleDecoder) {
       // decoder.recycle() might block the main thread
-      new RecycleDecoderTask(decoder).executeOnExecutor(executor);
+      executor.execute(new RecycleDecoderTask(decoder));
+    }
+    if (!shared) {
       preview.recycle();
     }
   }
 
+  /**
+   * Sets the executor to execute decode tasks, usually
+   * {@link com.hippo.android.gallery.GalleryView#getTileExecutor()}
+   * of the GalleryView which displays this TiledDrawable.
+   * Running decode tasks stay in the old executor.
+   */
+  @MainThread
+  public void setExecutor(@NonNull Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Returns the executor to execute decode tasks.
+   */
+  @NonNull
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Sets how exactly tiles match the display density.
+   * It's {@link #SAMPLE_QUALITY_FULL} by default.
+   */
+  @MainThread
+  public void setSampleQuality(@SampleQuality int sampleQuality) {
+    if (this.sampleQuality != sampleQuality) {
+      this.sampleQuality = sampleQuality;
+      invalidateSelf();
+    }
+  }
+
+  /**
+   * Returns the sample quality set in {@link #setSampleQuality(int)}.
+   */
+  @SampleQuality
+  public int getSampleQuality() {
+    return sampleQuality;
+  }
+
+  /**
+   * Stops requesting full resolution tiles while interacting, like during a scale animation.
+   * Sampled tiles are still requested. Missing tiles are filled by coarser tiles
+   * or the preview. Full resolution tiles are requested again once interacting stops.
+   */
+  @MainThread
+  @Override
+  public void setInteracting(boolean interacting) {
+    if (this.interacting != interacting) {
+      this.interacting = interacting;
+      if (!interacting) {
+        invalidateSelf();
+      }
+    }
+  }
+
+  /**
+   * Returns true if it's interacting.
+   */
+  public boolean isInteracting() {
+    return interacting;
+  }
+
+  /**
+   * Returns the count of pending tiles of this TiledDrawable.
+   */
+  public int getPendingTileCount() {
+    synchronized (QUEUE_LOCK) {
+      return pendingTiles.size();
+    }
+  }
+
+  /**
+   * Returns the count of tiles dropped from the pending tile queue of this TiledDrawable.
+   */
+  public int getDroppedTileCount() {
+    return droppedTileCount;
+  }
+
   @Override
   public int getIntrinsicWidth() {
     return width;
@@ -239,25 +639,295 @@ public class TiledDrawable extends Drawable implements Accurate {
     return Utils.prevPow2(sample);
   }
 
+  /*
+   * Returns the scale of tile bitmaps in steps of 1 / SCALE_STEPS,
+   * which makes tiles of the sample match the display density.
+   */
+  private int calculateScale(RectF src, RectF dst, int sample) {
+    if (sampleQuality == SAMPLE_QUALITY_FULL) {
+      return SCALE_STEPS;
+    }
+    float scale = sample * Math.max(dst.width() / src.width(), dst.height() / src.height());
+    int steps = (int) Math.ceil(scale * SCALE_STEPS);
+    return Math.max(1, Math.min(SCALE_STEPS, steps));
+  }
+
   private void drawPreview(Canvas canvas, RectF src, RectF dst) {
     RectF pSrc = rectF1;
     RectF pDst = rectF2;
-    pSrc.set(0, 0, width, height);
+    pSrc.set(previewRegion);
     Utils.mapRect(src, dst, pSrc, pDst);
     pSrc.set(0, 0, preview.getWidth(), preview.getHeight());
     matrix.setRectToRect(pSrc, pDst, Matrix.ScaleToFit.FILL);
     canvas.drawBitmap(preview, matrix, null);
   }
 
-  private void decodeTile(Tile tile, int sample) {
-    if (tile.task == null && !tile.failed) {
-      new DecodeTileTask(decoder, tile, sample).executeOnExecutor(executor);
+  private void drawTile(Canvas canvas, RectF src, RectF dst, Tile tile) {
+    Bitmap bitmap = tile.bitmap;
+    RectF tSrc = rectF1;
+    RectF tDst = rectF2;
+    tSrc.set(tile.rect);
+    Utils.mapRect(src, dst, tSrc, tDst);
+    tSrc.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
+    matrix.setRectToRect(tSrc, tDst, Matrix.ScaleToFit.FILL);
+    canvas.drawBitmap(bitmap, matrix, null);
+  }
+
+  /*
+   * Fills the area of the missing tile with the finest decoded ancestor tile,
+   * or the preview if there is no one.
+   */
+  private void drawFallback(Canvas canvas, RectF src, RectF dst, Tile tile) {
+    Tile ancestor = tile.parent;
+    while (ancestor != null && ancestor.bitmap == null) {
+      ancestor = ancestor.parent;
+    }
+
+    RectF tDst = rectF3;
+    tDst.set(tile.rect);
+    Utils.mapRect(src, dst, tDst, tDst);
+
+    int saved = canvas.save();
+    canvas.clipRect(tDst);
+    if (ancestor != null) {
+      // Keep it from gc
+      ancestor.fallback = true;
+      drawTile(canvas, src, dst, ancestor);
+    } else {
+      drawPreview(canvas, src, dst);
+    }
+    canvas.restoreToCount(saved);
+  }
+
+  private void decodeTile(Tile tile) {
+    if (tile.failed) {
+      return;
+    }
+
+    boolean startWorker = false;
+    synchronized (QUEUE_LOCK) {
+      if (tile.state != TILE_IDLE) {
+        return;
+      }
+
+      tile.state = TILE_PENDING;
+      tile.scale = currentScale;
+      tile.enqueueTime = performanceListener != null ? System.nanoTime() : 0;
+      if (GalleryTrace.isEnabled()) {
+        tile.traceCookie = ++nextTraceCookie;
+        GalleryTrace.beginAsyncSection(TRACE_TILE, tile.traceCookie);
+      }
+      pendingTiles.addLast(tile);
+      GLOBAL_PENDING_TILES.addLast(tile);
+
+      // Drop the furthest tile of this TiledDrawable
+      while (pendingTiles.size() > MAX_PENDING_TILES) {
+        dropTile(findFurthestPendingTile());
+      }
+      // Drop the oldest tile of all TiledDrawables
+      while (GLOBAL_PENDING_TILES.size() > MAX_GLOBAL_PENDING_TILES) {
+        dropTile(GLOBAL_PENDING_TILES.peekFirst());
+      }
+
+      if (!workerRunning && !pendingTiles.isEmpty()) {
+        workerRunning = true;
+        startWorker = true;
+      }
+    }
+
+    onTilesDropped();
+
+    if (startWorker) {
+      executor.execute(new DecodeWorker(this));
+    }
+  }
+
+  /*
+   * Returns the square of the distance from the tile to the center of the visible region.
+   */
+  private float getDistanceToVisibleCenter(Tile tile) {
+    Rect rect = tile.rect;
+    float dx = rect.exactCenterX() - visibleCenterX;
+    float dy = rect.exactCenterY() - visibleCenterY;
+    return dx * dx + dy * dy;
+  }
+
+  /*
+   * Returns the pending tile furthest from the visible region.
+   * Must be called with QUEUE_LOCK.
+   */
+  private Tile findFurthestPendingTile() {
+    Tile furthest = null;
+    float furthestDistance = -1.0f;
+    for (Tile tile : pendingTiles) {
+      float distance = getDistanceToVisibleCenter(tile);
+      if (distance > furthestDistance) {
+        furthest = tile;
+        furthestDistance = distance;
+      }
+    }
+    return furthest;
+  }
+
+  /*
+   * Removes the pending tile from pending tile queues.
+   * Must be called with QUEUE_LOCK.
+   */
+  private static void removePendingTile(Tile tile) {
+    tile.state = TILE_IDLE;
+    tile.drawable.pendingTiles.remove(tile);
+    GLOBAL_PENDING_TILES.remove(tile);
+    if (tile.traceCookie != 0) {
+      GalleryTrace.endAsyncSection(TRACE_TILE, tile.traceCookie);
+      tile.traceCookie = 0;
+    }
+    tile.enqueueTime = 0;
+  }
+
+  /*
+   * Drops the pending tile because of too many pending tiles.
+   * Must be called with QUEUE_LOCK in main thread,
+   * and call onTilesDropped() after releasing QUEUE_LOCK.
+   */
+  private static void dropTile(Tile tile) {
+    removePendingTile(tile);
+    tile.drawable.droppedTileCount++;
+    DROPPED_TILES.add(tile);
+  }
+
+  /*
+   * Notifies the PerformanceListener of dropped tiles.
+   * Must be called without QUEUE_LOCK in main thread.
+   *
+   * Dropped visible tiles are requested again after a tile is decoded,
+   * not right now. The queues are still full, requesting them in next drawing
+   * only drops other tiles and keeps invalidating.
+   */
+  private static void onTilesDropped() {
+    if (DROPPED_TILES.isEmpty()) {
+      return;
+    }
+
+    PerformanceListener listener = performanceListener;
+    for (Tile tile : DROPPED_TILES) {
+      TiledDrawable drawable = tile.drawable;
+      if (listener != null) {
+        listener.onDropTile(drawable, tile.sample, drawable.getPendingTileCount());
+      }
+      if (tile.visible && !drawable.retryDroppedTiles) {
+        drawable.retryDroppedTiles = true;
+        RETRY_DRAWABLES.add(drawable);
+      }
+    }
+    DROPPED_TILES.clear();
+  }
+
+  /*
+   * Draws TiledDrawables with dropped visible tiles again.
+   * Called in main thread when a tile is decoded and the queues have room.
+   */
+  private static void retryDroppedTiles() {
+    if (RETRY_DRAWABLES.isEmpty()) {
+      return;
+    }
+
+    TiledDrawable[] drawables = RETRY_DRAWABLES.toArray(new TiledDrawable[0]);
+    RETRY_DRAWABLES.clear();
+    for (TiledDrawable drawable : drawables) {
+      drawable.retryDroppedTiles = false;
+      if (!drawable.recycled) {
+        drawable.invalidateSelf();
+      }
+    }
+  }
+
+  /*
+   * Removes the tile from pending tile queues,
+   * or drops the result if it's decoding.
+   */
+  private static void cancelDecode(Tile tile) {
+    // Only main thread turns a tile from TILE_IDLE,
+    // so it's safe to skip idle tiles without the lock
+    if (tile.state == TILE_IDLE) {
+      return;
+    }
+
+    synchronized (QUEUE_LOCK) {
+      if (tile.state == TILE_PENDING) {
+        removePendingTile(tile);
+      } else if (tile.state == TILE_DECODING) {
+        // Stop decoding
+        tile.cancelled = true;
+        tile.signal.cancel();
+      }
+    }
+  }
+
+  /*
+   * Called in main thread when DecodeWorker decoded the tile.
+   */
+  private void onDecodeTile(Tile tile, @Nullable Bitmap bitmap, int scale) {
+    boolean cancelled;
+    int queueDepth;
+    synchronized (QUEUE_LOCK) {
+      tile.state = TILE_IDLE;
+      cancelled = tile.cancelled;
+      tile.cancelled = false;
+      tile.signal = null;
+      queueDepth = pendingTiles.size();
+    }
+
+    if (tile.traceCookie != 0) {
+      GalleryTrace.endAsyncSection(TRACE_TILE, tile.traceCookie);
+      tile.traceCookie = 0;
+    }
+    PerformanceListener listener = performanceListener;
+    if (listener != null && tile.enqueueTime != 0) {
+      listener.onDecodeTile(this, tile.sample, System.nanoTime() - tile.enqueueTime,
+          queueDepth, bitmap != null);
+    }
+    tile.enqueueTime = 0;
+
+    retryDroppedTiles();
+
+    if (recycled || cancelled) {
+      if (bitmap != null) {
+        decoder.recycle(bitmap);
+      }
+      // Request it again if it becomes visible during decoding
+      if (!recycled && tile.visible && tile.sample == currentSample) {
+        invalidateSelf();
+      }
+      return;
+    }
+
+    if (bitmap != null) {
+      if (tile.bitmap != null) {
+        // It's a rescaled one
+        decoder.recycle(tile.bitmap);
+      }
+      tile.bitmap = bitmap;
+      tile.bitmapScale = scale;
+      invalidateSelf();
+    } else {
+      tile.failed = true;
+      Log.e(LOG_TAG, "Can't decode region " + tile.rect + " at sample " + tile.sample);
     }
   }
 
   private void drawTiles(Canvas canvas, RectF src, RectF dst, List<Tile> tiles, int sample) {
     List<Tile> toDraw = this.list1;
-    boolean missTiles = false;
+    List<Tile> toDecode = this.list2;
+    int missCount = 0;
+
+    visibleCenterX = src.centerX();
+    visibleCenterY = src.centerY();
+
+    Executor executor = this.executor;
+    boolean executorInteracting = executor instanceof TileExecutor
+        && ((TileExecutor) executor).isInteracting();
+    boolean anyInteracting = interacting || executorInteracting;
+    boolean rescaleDeferred = false;
 
     for (Tile tile : tiles) {
       Rect rect = tile.rect;
@@ -267,36 +937,78 @@ public class TiledDrawable extends Drawable implements Accurate {
       }
 
       if (tile.bitmap == null) {
-        missTiles = true;
-        decodeTile(tile, sample);
+        missCount++;
+        toDecode.add(tile);
+        // Only fill the hole of the tile, tiles and fallbacks never overlap
+        drawFallback(canvas, src, dst, tile);
       } else {
         toDraw.add(tile);
+        if (tile.bitmapScale < currentScale) {
+          // Too small for the display density, keep drawing it until the new one decoded.
+          // The scale keeps changing while interacting, rescale it after that.
+          if (anyInteracting) {
+            rescaleDeferred = true;
+          } else {
+            toDecode.add(tile);
+          }
+        }
       }
     }
 
-    if (missTiles) {
-      // TODO doesn't work fine with image with alpha channel
-      drawPreview(canvas, src, dst);
+    boolean decodeDeferred = rescaleDeferred;
+    if (!toDecode.isEmpty()) {
+      if (sample == 1 && anyInteracting) {
+        // Full resolution tiles are likely to be thrown away soon, decode them later
+        decodeDeferred = true;
+      } else {
+        // The nearest tile first
+        Collections.sort(toDecode, distanceComparator);
+        for (Tile tile : toDecode) {
+          decodeTile(tile);
+        }
+      }
+      toDecode.clear();
+    }
+    if (decodeDeferred && executorInteracting) {
+      // setInteracting(false) or the TileExecutor draws it again
+      ((TileExecutor) executor).defer(this);
     }
 
-    RectF tSrc = rectF1;
-    RectF tDst = rectF2;
-    for (final Tile tile : toDraw) {
-      Bitmap bitmap = tile.bitmap;
-      if (bitmap == null) {
-        continue;
-      }
+    if (performanceListener != null) {
+      performanceListener.onDrawTiles(this, sample, toDraw.size(), missCount);
+    }
 
-      tSrc.set(tile.rect);
-      Utils.mapRect(src, dst, tSrc, tDst);
-      tSrc.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
-      matrix.setRectToRect(tSrc, tDst, Matrix.ScaleToFit.FILL);
-      canvas.drawBitmap(bitmap, matrix, null);
+    for (Tile tile : toDraw) {
+      if (tile.bitmap != null) {
+        drawTile(canvas, src, dst, tile);
+      }
     }
 
     toDraw.clear();
   }
 
+  /*
+   * Recycles tiles of the samples except current sample, including fallbacks.
+   */
+  private void trimSampleLevels() {
+    for (int i = 0, len = tilesMap.size(); i < len; i++) {
+      if (tilesMap.keyAt(i) == currentSample) {
+        continue;
+      }
+      for (Tile tile : tilesMap.valueAt(i)) {
+        cancelDecode(tile);
+        if (tile.bitmap != null) {
+          decoder.recycle(tile.bitmap);
+          tile.bitmap = null;
+        }
+        tile.fallback = false;
+        tile.failed = false;
+      }
+    }
+    // Fallbacks are gone, draw the preview instead
+    invalidateSelf();
+  }
+
   private void gc() {
     for (int i = 0, len = tilesMap.size(); i < len; i++) {
       int sample = tilesMap.keyAt(i);
@@ -308,14 +1020,18 @@ public class TiledDrawable extends Drawable implements Accurate {
           continue;
         }
 
+        // Skip the fallbacks of current drawing
+        if (tile.fallback) {
+          tile.fallback = false;
+          continue;
+        }
+
         if (tile.bitmap != null) {
           decoder.recycle(tile.bitmap);
           tile.bitmap = null;
         }
 
-        if (tile.task != null) {
-          tile.task.cancel(false);
-        }
+        cancelDecode(tile);
 
         if (sample != currentSample) {
           tile.failed = false;
@@ -326,24 +1042,45 @@ public class TiledDrawable extends Drawable implements Accurate {
 
   @Override
   public void draw(@NonNull Canvas canvas, @NonNull RectF src, @NonNull RectF dst) {
-    if (recycled) {
+    if (recycled || region.isEmpty()) {
       return;
     }
 
-    int sample = calculateSample(src, dst);
+    // Tiles and the preview are in image coordinates
+    RectF source = regionSrc;
+    source.set(src);
+    source.offset(region.left, region.top);
+
+    int sample = calculateSample(source, dst);
     sample = Math.min(previewSample, sample);
     currentSample = sample;
+    currentScale = calculateScale(source, dst, sample);
 
+    GalleryTrace.beginSection("TiledDrawable.draw");
     int saved = canvas.save();
     canvas.clipRect(dst);
     if (sample == previewSample) {
-      drawPreview(canvas, src, dst);
+      drawPreview(canvas, source, dst);
     } else {
-      drawTiles(canvas, src, dst, tilesMap.get(sample, Collections.<Tile>emptyList()), sample);
+      drawTiles(canvas, source, dst, tilesMap.get(sample, Collections.<Tile>emptyList()), sample);
     }
     canvas.restoreToCount(saved);
 
     gc();
+    GalleryTrace.endSection();
+  }
+
+  @Override
+  public void draw(@NonNull Canvas canvas, @NonNull RectF src, @NonNull RectF dst, int rotation) {
+    if (rotation == ROTATION_0) {
+      draw(canvas, src, dst);
+    } else {
+      // Tiles are picked by src, only the canvas is rotated
+      int saved = canvas.save();
+      Utils.rotateCanvas(canvas, dst, rotation, unrotatedDst);
+      draw(canvas, src, unrotatedDst);
+      canvas.restoreToCount(saved);
+    }
   }
 
   @Override
@@ -357,75 +1094,197 @@ public class TiledDrawable extends Drawable implements Accurate {
     return PixelFormat.TRANSLUCENT;
   }
 
+  /**
+   * PerformanceListener receives tile metrics of TiledDrawables.
+   * All methods are called in main thread. They should return quickly.
+   */
+  public interface PerformanceListener {
+
+    /**
+     * Called when a tile decode task finishes.
+     *
+     * @param sample the sample of the tile
+     * @param latencyNs the duration from enqueuing to finishing, in nanoseconds
+     * @param queueDepth the count of pending tiles of the TiledDrawable
+     * @param success whether the tile is decoded
+     */
+    void onDecodeTile(TiledDrawable drawable, int sample, long latencyNs, int queueDepth,
+        boolean success);
+
+    /**
+     * Called when a pending tile is dropped because of too many pending tiles.
+     *
+     * @param sample the sample of the tile
+     * @param queueDepth the count of pending tiles of the TiledDrawable
+     */
+    void onDropTile(TiledDrawable drawable, int sample, int queueDepth);
+
+    /**
+     * Called when the TiledDrawable draws tiles.
+     * Hit tiles are drawn from decoded bitmaps, missed tiles are not decoded yet.
+     *
+     * @param sample the sample of the tiles
+     * @param hitCount the count of visible tiles which are decoded
+     * @param missCount the count of visible tiles which are not decoded
+     */
+    void onDrawTiles(TiledDrawable drawable, int sample, int hitCount, int missCount);
+  }
+
   private static class Tile {
-    private Drawable drawable;
+    private TiledDrawable drawable;
     // Source rect, the rect of the source image
     private Rect rect;
+    private int sample;
+    // The tile of the coarser sample which covers this tile, null for the coarsest sample
+    private Tile parent;
     private Bitmap bitmap;
+    // The scale of the bitmap, in steps of 1 / SCALE_STEPS
+    private int bitmapScale;
+    // The scale to decode, in steps of 1 / SCALE_STEPS, guarded by QUEUE_LOCK
+    private int scale = SCALE_STEPS;
+    // Mark the bitmap is drawn instead of a missing tile of current sample
+    private boolean fallback;
     // Mark the tile can be seen in the screen
     // It's only valid for the tiles in current sample
     private boolean visible;
-    private AsyncTask task;
     private boolean failed;
+    // TILE_IDLE, TILE_PENDING or TILE_DECODING, written with QUEUE_LOCK
+    private volatile int state = TILE_IDLE;
+    // True if the decoding result is not needed anymore, guarded by QUEUE_LOCK
+    private boolean cancelled;
+    // The signal to cancel decoding, only valid in TILE_DECODING, guarded by QUEUE_LOCK
+    private DecodeCancellationSignal signal;
+    // The time when the tile enqueued, 0 if not tracked
+    private long enqueueTime;
+    // The cookie of the async trace section, 0 if not traced
+    private int traceCookie;
   }
 
-  private static class DecodeTileTask extends AsyncTask<Void, Void, Bitmap> {
+  /*
+   * DecodeWorker decodes the pending tiles of a TiledDrawable one by one,
+   * until there is no pending tile. Only one DecodeWorker runs for one TiledDrawable.
+   *
+   * It yields if TileExecutor is paused, and stops if TileExecutor is shut down.
+   */
+  private static class DecodeWorker implements TileExecutor.DrainableTask {
 
-    private final ImageRegionDecoder decoder;
-    private final Tile tile;
-    private final int sample;
+    private final TiledDrawable drawable;
 
-    public DecodeTileTask(ImageRegionDecoder decoder, Tile tile, int sample) {
-      this.decoder = decoder;
-      this.tile = tile;
-      this.sample = sample;
+    public DecodeWorker(TiledDrawable drawable) {
+      this.drawable = drawable;
     }
 
     @Override
-    protected void onPreExecute() {
-      tile.task = this;
-    }
+    public void run() {
+      ImageRegionDecoder decoder = drawable.decoder;
+      boolean recycleDecoder;
+
+      for (;;) {
+        if (Thread.currentThread().isInterrupted()) {
+          // TileExecutor is shut down
+          ImageRegionDecoder toRecycle = drain();
+          if (toRecycle != null) {
+            toRecycle.recycle();
+          }
+          return;
+        }
 
-    @Override
-    protected Bitmap doInBackground(Void... params) {
-      return decoder.decode(tile.rect, Bitmap.Config.ARGB_8888, sample);
-    }
+        Executor executor = drawable.executor;
+        if (executor instanceof TileExecutor && ((TileExecutor) executor).isPaused()) {
+          // Wait for resuming
+          executor.execute(this);
+          return;
+        }
 
-    @Override
-    protected void onPostExecute(Bitmap bitmap) {
-      tile.task = null;
-      tile.bitmap = bitmap;
-      if (bitmap != null) {
-        if (tile.drawable != null) {
-          tile.drawable.invalidateSelf();
+        Tile tile;
+        int scale;
+        DecodeCancellationSignal signal = new DecodeCancellationSignal();
+        synchronized (QUEUE_LOCK) {
+          tile = drawable.pendingTiles.pollFirst();
+          if (tile == null) {
+            drawable.workerRunning = false;
+            recycleDecoder = drawable.recycled && !drawable.shared;
+            break;
+          }
+          GLOBAL_PENDING_TILES.remove(tile);
+          tile.state = TILE_DECODING;
+          tile.signal = signal;
+          scale = tile.scale;
         }
-      } else {
-        tile.failed = true;
-        Log.e(LOG_TAG, "Can't decode region " + tile.rect + " at sample " + sample);
+
+        GalleryTrace.beginSection(TRACE_DECODE_TILE);
+        Bitmap bitmap = decoder.decode(tile.rect, Bitmap.Config.ARGB_8888, tile.sample, signal);
+        if (bitmap != null && scale < SCALE_STEPS) {
+          bitmap = scaleBitmap(decoder, bitmap, scale);
+        }
+        GalleryTrace.endSection();
+
+        Bitmap result = bitmap;
+        MAIN_HANDLER.post(() -> drawable.onDecodeTile(tile, result, scale));
+      }
+
+      if (recycleDecoder) {
+        decoder.recycle();
       }
     }
 
-    @Override
-    protected void onCancelled(Bitmap bitmap) {
-      tile.task = null;
-      if (bitmap != null) {
+    /*
+     * Downscales the bitmap to scale / SCALE_STEPS.
+     * Returns the bitmap itself if it can't be scaled.
+     */
+    private static Bitmap scaleBitmap(ImageRegionDecoder decoder, Bitmap bitmap, int scale) {
+      int width = Math.max(1, bitmap.getWidth() * scale / SCALE_STEPS);
+      int height = Math.max(1, bitmap.getHeight() * scale / SCALE_STEPS);
+      Bitmap scaled;
+      try {
+        scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+      } catch (OutOfMemoryError e) {
+        Log.e(LOG_TAG, "Out of memory when scaling tile", e);
+        return bitmap;
+      }
+      if (scaled != bitmap) {
         decoder.recycle(bitmap);
       }
+      return scaled;
+    }
+
+    /*
+     * Drops all pending tiles.
+     */
+    @Nullable
+    @Override
+    public ImageRegionDecoder drain() {
+      boolean recycleDecoder;
+      synchronized (QUEUE_LOCK) {
+        Tile tile;
+        while ((tile = drawable.pendingTiles.peekFirst()) != null) {
+          removePendingTile(tile);
+        }
+        drawable.workerRunning = false;
+        recycleDecoder = drawable.recycled && !drawable.shared;
+      }
+      return recycleDecoder ? drawable.decoder : null;
     }
   }
 
-  private static class RecycleDecoderTask extends AsyncTask<Void, Void, Void> {
+  private static class RecycleDecoderTask implements TileExecutor.DrainableTask {
 
-    private ImageRegionDecoder decoder;
+    private final ImageRegionDecoder decoder;
 
     private RecycleDecoderTask(ImageRegionDecoder decoder) {
       this.decoder = decoder;
     }
 
     @Override
-    protected Void doInBackground(Void... voids) {
+    public void run() {
       decoder.recycle();
-      return null;
+    }
+
+    @NonNull
+    @Override
+    public ImageRegionDecoder drain() {
+      // The decoder must be recycled
+      return decoder;
     }
   }
 }
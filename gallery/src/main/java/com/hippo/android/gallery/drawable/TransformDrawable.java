@@ -25,22 +25,36 @@ import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
+import android.support.animation.FloatPropertyCompat;
+import android.support.animation.SpringAnimation;
+import android.support.animation.SpringForce;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import com.hippo.android.gallery.BuildConfig;
 import com.hippo.android.gallery.Utils;
 import com.hippo.android.gallery.intf.Accurate;
+import com.hippo.android.gallery.intf.Interactive;
 import com.hippo.android.gallery.intf.Transformable;
 import java.util.Arrays;
 
 /**
- * TransformDrawable can apply scaling or scrolling to any kind of drawable.
+ * TransformDrawable can apply scaling, scrolling or rotation to any kind of drawable.
+ *
+ * Rotation is in steps of 90 degrees. {@link Accurate} drawables draw the visible region
+ * mapped back to their own coordinate, the others are drawn with a rotated canvas.
+ *
+ * Drawables which aren't {@link Accurate} are drawn entirely, even if they are
+ * scaled far beyond the bounds. Wrap them with {@link AccurateDrawable} to draw
+ * only the visible region.
  */
 public class TransformDrawable extends DrawableWrapper implements Transformable {
 
   private static final float MIN_SCALE = 1.0f;
   private static final float MAX_SCALE = 3.0f;
 
+  // The final value of scale animation progress
+  private static final float SCALE_PROGRESS_END = 1000.0f;
+
   @ScaleType
   private int scaleType = SCALE_TYPE_FIT;
   @StartPosition
@@ -50,8 +64,15 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
   private RectF dstRect = new RectF();
   private boolean drawRectFDirty = true;
 
+  // The size of the wrapped drawable after rotation
   private int width = -1;
   private int height = -1;
+  // The size of the wrapped drawable before rotation
+  private int sourceWidth = -1;
+  private int sourceHeight = -1;
+
+  @Accurate.Rotation
+  private int rotation = Accurate.ROTATION_0;
 
   private float offsetX;
   private float offsetY;
@@ -69,8 +90,57 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
   // false if offsetX or offsetY isn't fit startPosition
   private boolean offsetDirty = true;
 
+  private static final FloatPropertyCompat<TransformDrawable> SCALE_PROGRESS =
+      new FloatPropertyCompat<TransformDrawable>("scaleProgress") {
+        @Override
+        public float getValue(TransformDrawable td) {
+          return td.scaleProgress;
+        }
+        @Override
+        public void setValue(TransformDrawable td, float value) {
+          td.setScaleProgress(value);
+        }
+      };
+  private final SpringAnimation scaleAnimation =
+      new SpringAnimation(this, SCALE_PROGRESS, SCALE_PROGRESS_END);
+  private float scaleProgress;
+  // Scale and offset at the start and the end of scale animation
+  private float startScale;
+  private float startOffsetX;
+  private float startOffsetY;
+  private float endScale;
+  private float endOffsetX;
+  private float endOffsetY;
+  // The drawable which is told interacting by scale animation
+  @Nullable
+  private Interactive interactingDrawable;
+
+  public TransformDrawable() {
+    scaleAnimation.getSpring()
+        .setDampingRatio(SpringForce.DAMPING_RATIO_NO_BOUNCY)
+        .setStiffness(SpringForce.STIFFNESS_LOW);
+    scaleAnimation.addEndListener((animation, canceled, value, velocity) -> {
+      if (!canceled) {
+        scale = endScale;
+        offsetX = endOffsetX;
+        offsetY = endOffsetY;
+      }
+      // Intermediate states might be out of limitation
+      fixScale();
+      fixOffset();
+      drawRectFDirty = true;
+      invalidateSelf();
+
+      if (interactingDrawable != null) {
+        interactingDrawable.setInteracting(false);
+        interactingDrawable = null;
+      }
+    });
+  }
+
   @Override
   public void onSetWrappedDrawable(@Nullable Drawable oldDrawable, @Nullable Drawable newDrawable) {
+    cancelAnimations();
     if (newDrawable != null) {
       drawableWidth = newDrawable.getIntrinsicWidth();
       drawableHeight = newDrawable.getIntrinsicHeight();
@@ -84,6 +154,8 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
       drawableHeight = -1;
       width = -1;
       height = -1;
+      sourceWidth = -1;
+      sourceHeight = -1;
       scale = 0.0f;
       drawRectFDirty = true;
       scaleDirty = true;
@@ -110,6 +182,7 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
 
   @Override
   protected void onBoundsChange(Rect bounds) {
+    cancelAnimations();
     drawRectFDirty = true;
     scaleDirty = true;
     offsetDirty = true;
@@ -131,12 +204,21 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
     if (drawable != null) {
       int dWidth = drawable.getIntrinsicWidth();
       int dHeight = drawable.getIntrinsicHeight();
-      width = dWidth > 0 ? dWidth : Math.max(bounds.width(), 0);
-      height = dHeight > 0 ? dHeight : Math.max(bounds.height(), 0);
-      drawable.setBounds(0, 0, width, height);
+      sourceWidth = dWidth > 0 ? dWidth : Math.max(bounds.width(), 0);
+      sourceHeight = dHeight > 0 ? dHeight : Math.max(bounds.height(), 0);
+      drawable.setBounds(0, 0, sourceWidth, sourceHeight);
+      if (rotation == Accurate.ROTATION_90 || rotation == Accurate.ROTATION_270) {
+        width = sourceHeight;
+        height = sourceWidth;
+      } else {
+        width = sourceWidth;
+        height = sourceHeight;
+      }
     } else {
       width = -1;
       height = -1;
+      sourceWidth = -1;
+      sourceHeight = -1;
     }
 
     drawRectFDirty = true;
@@ -265,6 +347,7 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
 
   @Override
   public void setScale(float scale) {
+    cancelAnimations();
     if (scaleType != SCALE_TYPE_FIXED || this.scale != scale) {
       this.scale = scale;
       scaleType = SCALE_TYPE_FIXED;
@@ -275,6 +358,7 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
 
   @Override
   public void setScaleType(int scaleType) {
+    cancelAnimations();
     if (this.scaleType != scaleType || scaleDirty) {
       this.scaleType = scaleType;
       resetLayout();
@@ -284,6 +368,7 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
 
   @Override
   public void setStartPosition(int startPosition) {
+    cancelAnimations();
     if (this.startPosition != startPosition || offsetDirty) {
       this.startPosition = startPosition;
       resetLayout();
@@ -291,6 +376,25 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
     }
   }
 
+  @Override
+  public void setContentRotation(int rotation) {
+    cancelAnimations();
+    if (this.rotation != rotation) {
+      this.rotation = rotation;
+      updateWrapperDrawableBounds();
+      if (width > 0 && height > 0 && !getBounds().isEmpty()) {
+        updateScaleLevels();
+        resetLayout();
+        invalidateSelf();
+      }
+    }
+  }
+
+  @Override
+  public int getContentRotation() {
+    return rotation;
+  }
+
   // For debug
   private void checkLayout() {
     // Check scale
@@ -341,6 +445,8 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
       return;
     }
 
+    cancelAnimations();
+
     // Assume offset and scale is in bounds
     if (BuildConfig.DEBUG) {
       checkLayout();
@@ -409,6 +515,8 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
       return;
     }
 
+    cancelAnimations();
+
     // Assume offset and scale is in bounds
     if (BuildConfig.DEBUG) {
       checkLayout();
@@ -450,6 +558,112 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
     }
   }
 
+  @Override
+  public void animateScale(float x, float y, float scale) {
+    Rect bounds = getBounds();
+    if (width <= 0 || height <= 0 || bounds.isEmpty()) {
+      return;
+    }
+    cancelAnimations();
+
+    float newScale = Utils.clamp(scale, minScale, maxScale);
+    float factor = newScale / this.scale;
+    startScaleAnimation(newScale, x - ((x - offsetX) * factor), y - ((y - offsetY) * factor));
+  }
+
+  @Override
+  public void animateNextScaleLevel(float x, float y) {
+    Rect bounds = getBounds();
+    if (width <= 0 || height <= 0 || bounds.isEmpty()) {
+      return;
+    }
+    cancelAnimations();
+
+    animateScale(x, y, getNextScaleLevel());
+  }
+
+  @Override
+  public void animateScaleToRect(@NonNull RectF rect) {
+    Rect bounds = getBounds();
+    if (width <= 0 || height <= 0 || bounds.isEmpty() || rect.isEmpty()) {
+      return;
+    }
+    cancelAnimations();
+
+    float factor = Math.min(bounds.width() / rect.width(), bounds.height() / rect.height());
+    float newScale = Utils.clamp(scale * factor, minScale, maxScale);
+    factor = newScale / scale;
+    // Move the center of the rect to the center of bounds
+    startScaleAnimation(newScale,
+        bounds.width() / 2.0f - (rect.centerX() - offsetX) * factor,
+        bounds.height() / 2.0f - (rect.centerY() - offsetY) * factor);
+  }
+
+  private void startScaleAnimation(float newScale, float newOffsetX, float newOffsetY) {
+    startScale = scale;
+    startOffsetX = offsetX;
+    startOffsetY = offsetY;
+
+    // Apply limitation to the end state
+    scale = newScale;
+    offsetX = newOffsetX;
+    offsetY = newOffsetY;
+    fixOffset();
+    endScale = scale;
+    endOffsetX = offsetX;
+    endOffsetY = offsetY;
+
+    scale = startScale;
+    offsetX = startOffsetX;
+    offsetY = startOffsetY;
+
+    if (endScale == startScale && endOffsetX == startOffsetX && endOffsetY == startOffsetY) {
+      return;
+    }
+
+    // Skip expensive work of the wrapped drawable during animation
+    Drawable drawable = getDrawable();
+    if (drawable instanceof Interactive) {
+      interactingDrawable = (Interactive) drawable;
+      interactingDrawable.setInteracting(true);
+    }
+
+    scaleProgress = 0.0f;
+    scaleAnimation.setStartValue(0.0f);
+    scaleAnimation.animateToFinalPosition(SCALE_PROGRESS_END);
+  }
+
+  private void setScaleProgress(float progress) {
+    scaleProgress = progress;
+    float fraction = progress / SCALE_PROGRESS_END;
+
+    float factor = endScale / startScale;
+    scale = startScale * (float) Math.pow(factor, fraction);
+    if (Utils.floatEquals(factor, 1.0f)) {
+      offsetX = startOffsetX + (endOffsetX - startOffsetX) * fraction;
+      offsetY = startOffsetY + (endOffsetY - startOffsetY) * fraction;
+    } else {
+      // The change from start to end is a scaling around the pivot
+      float pivotX = (endOffsetX - startOffsetX * factor) / (1.0f - factor);
+      float pivotY = (endOffsetY - startOffsetY * factor) / (1.0f - factor);
+      float currentFactor = scale / startScale;
+      offsetX = pivotX - (pivotX - startOffsetX) * currentFactor;
+      offsetY = pivotY - (pivotY - startOffsetY) * currentFactor;
+    }
+
+    drawRectFDirty = true;
+    scaleDirty = true;
+    offsetDirty = true;
+    invalidateSelf();
+  }
+
+  @Override
+  public void cancelAnimations() {
+    if (scaleAnimation.isRunning()) {
+      scaleAnimation.cancel();
+    }
+  }
+
   /*
    * Apply bounds, clipRect, scale, offsetX, offsetY to
    * srcRect and dstRect.
@@ -484,6 +698,56 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
     if (!srcRect.intersect(0, 0, width, height)) {
       srcRect.setEmpty();
       dstRect.setEmpty();
+      return;
+    }
+
+    unrotateRect(srcRect);
+  }
+
+  /*
+   * Maps the rect from the rotated coordinate back to the coordinate of the wrapped drawable.
+   */
+  private void unrotateRect(RectF rect) {
+    float left = rect.left;
+    float top = rect.top;
+    float right = rect.right;
+    float bottom = rect.bottom;
+    switch (rotation) {
+      default:
+      case Accurate.ROTATION_0:
+        break;
+      case Accurate.ROTATION_90:
+        rect.set(top, sourceHeight - right, bottom, sourceHeight - left);
+        break;
+      case Accurate.ROTATION_180:
+        rect.set(sourceWidth - right, sourceHeight - bottom, sourceWidth - left, sourceHeight - top);
+        break;
+      case Accurate.ROTATION_270:
+        rect.set(sourceWidth - bottom, left, sourceWidth - top, right);
+        break;
+    }
+  }
+
+  /*
+   * Rotates the canvas to draw the wrapped drawable at the rotated coordinate.
+   */
+  private void rotateCanvas(Canvas canvas) {
+    switch (rotation) {
+      default:
+      case Accurate.ROTATION_0:
+        break;
+      case Accurate.ROTATION_90:
+        canvas.translate(sourceHeight, 0);
+        canvas.rotate(90);
+        break;
+      case Accurate.ROTATION_180:
+        canvas.translate(sourceWidth, sourceHeight);
+        canvas.rotate(180);
+        break;
+      case Accurate.ROTATION_270:
+        canvas.translate(0, sourceWidth);
+        canvas.rotate(270);
+        break;
     }
   }
 
@@ -498,12 +762,13 @@ public class TransformDrawable extends DrawableWrapper implements Transformable
     if (drawable instanceof Accurate) {
       updateDrawRect();
       if (!srcRect.isEmpty() && !dstRect.isEmpty()) {
-        ((Accurate) drawable).draw(canvas, srcRect, dstRect);
+        ((Accurate) drawable).draw(canvas, srcRect, dstRect, rotation);
       }
     } else {
       int saved = canvas.save();
       canvas.translate(bounds.left + offsetX, bounds.top + offsetY);
       canvas.scale(scale, scale);
+      rotateCanvas(canvas);
       drawable.draw(canvas);
       canvas.restoreToCount(saved);
     }
@@ -22,7 +22,11 @@ package com.hippo.android.gallery.intf;
 
 import android.graphics.Canvas;
 import android.graphics.RectF;
+import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
+import com.hippo.android.gallery.Utils;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 
 /**
  * Accurate provides a way to draw only a rectangle region of this drawable.
@@ -31,10 +35,37 @@ import android.support.annotation.NonNull;
  */
 public interface Accurate {
 
+  @IntDef({ROTATION_0, ROTATION_90, ROTATION_180, ROTATION_270})
+  @Retention(RetentionPolicy.SOURCE)
+  @interface Rotation {}
+
+  /**
+   * Clockwise rotations in degrees.
+   */
+  int ROTATION_0 = 0;
+  int ROTATION_90 = 90;
+  int ROTATION_180 = 180;
+  int ROTATION_270 = 270;
+
   /**
    * Draw a rectangle region {@code src} in the destination region {@code dst}.
    *
    * The region {@code src} is based on intrinsic width and height.
    */
   void draw(@NonNull Canvas canvas, @NonNull RectF src, @NonNull RectF dst);
+
+  /**
+   * Draw a rectangle region {@code src} in the destination region {@code dst},
+   * rotated clockwise around the center of {@code dst}.
+   *
+   * The region {@code src} is based on intrinsic width and height, it isn't rotated.
+   * The width and height of {@code src} are swapped in {@code dst}
+   * if the rotation is {@link #ROTATION_90} or {@link #ROTATION_270}.
+   *
+   * It's called in every frame. Implementations usually rotate the canvas with
+   * {@link Utils#rotateCanvas(Canvas, RectF, int, RectF)} into a field rect,
+   * then call {@link #draw(Canvas, RectF, RectF)}.
+   */
+  void draw(@NonNull Canvas canvas, @NonNull RectF src, @NonNull RectF dst,
+      @Rotation int rotation);
 }
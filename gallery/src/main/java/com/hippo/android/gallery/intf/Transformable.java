@@ -20,7 +20,9 @@ package com.hippo.android.gallery.intf;
  * Created by Hippo on 2018/1/27.
  */
 
+import android.graphics.RectF;
 import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -90,4 +92,55 @@ public interface Transformable {
    * Set start position for the content of this transformer.
    */
   void setStartPosition(@StartPosition int startPosition);
+
+  /**
+   * Set clockwise rotation for the content of this transformer.
+   * Scale and offset are reset to fit scale type and start position.
+   * Does nothing by default.
+   */
+  default void setContentRotation(@Accurate.Rotation int rotation) {}
+
+  /**
+   * Returns the rotation set in {@link #setContentRotation(int)}.
+   */
+  @Accurate.Rotation
+  default int getContentRotation() {
+    return Accurate.ROTATION_0;
+  }
+
+  /**
+   * Scale the content of this transformer to the scale with an animation.
+   * The focus stays still if possible.
+   * Calls {@link #setScale(float)} without animation by default.
+   *
+   * @param x focus x
+   * @param y focus y
+   */
+  default void animateScale(float x, float y, float scale) {
+    setScale(scale);
+  }
+
+  /**
+   * Scale the content of this transformer to the next scale level with an animation,
+   * usually for double tap. The focus stays still if possible.
+   * Does nothing by default.
+   *
+   * @param x focus x
+   * @param y focus y
+   */
+  default void animateNextScaleLevel(float x, float y) {}
+
+  /**
+   * Scale and scroll the content of this transformer with an animation,
+   * to make the rect fit this transformer.
+   * Does nothing by default.
+   *
+   * @param rect the rect in the coordinate of this transformer
+   */
+  default void animateScaleToRect(@NonNull RectF rect) {}
+
+  /**
+   * Cancel all animations of this transformer.
+   */
+  default void cancelAnimations() {}
 }
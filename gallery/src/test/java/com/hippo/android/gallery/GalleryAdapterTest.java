@@ -21,6 +21,9 @@ package com.hippo.android.gallery;
  */
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
@@ -160,6 +163,144 @@ public class GalleryAdapterTest {
     layout.assertPages();
   }
 
+  @Test
+  public void testBatchedUpdates() {
+    GalleryLayout layout = new GalleryLayout(RuntimeEnvironment.application);
+    layout.set(new int[] {0, 1, 2, 3, 4});
+    layout.layout();
+    layout.assertPages();
+
+    layout.adapter.beginBatchedUpdates();
+    layout.set(new int[] {0, 9, 1, 2, 3, 4});
+    layout.adapter.notifyPageInserted(1);
+    layout.set(new int[] {0, 8, 9, 1, 2, 3, 4});
+    layout.adapter.notifyPageInserted(1);
+    layout.set(new int[] {0, 8, 9, 1, 2, 3});
+    layout.adapter.notifyPageRemoved(6);
+    layout.adapter.beginBatchedUpdates();
+    layout.set(new int[] {8, 9, 1, 2, 3, 0});
+    layout.adapter.notifyPageMoved(0, 5);
+    layout.set(new int[] {8, 9, 100, 2, 3, 0});
+    layout.adapter.notifyPageChanged(2);
+    layout.adapter.endBatchedUpdates();
+    layout.adapter.endBatchedUpdates();
+    layout.layout();
+    layout.assertPages();
+  }
+
+  @Test
+  public void testNotifyWithoutPages() {
+    GalleryLayout layout = new GalleryLayout(RuntimeEnvironment.application);
+    layout.set(new int[] {});
+    layout.layout();
+    assertFalse(layout.view.isLayoutRequested());
+
+    // No attached page is changed or moved
+    layout.adapter.notifyPageChanged(0);
+    layout.adapter.notifyPageMoved(0, 1);
+    assertFalse(layout.view.isLayoutRequested());
+
+    layout.adapter.beginBatchedUpdates();
+    layout.adapter.notifyPageRangeChanged(0, 3);
+    layout.adapter.notifyPageMoved(1, 2);
+    layout.adapter.endBatchedUpdates();
+    assertFalse(layout.view.isLayoutRequested());
+
+    layout.set(new int[] {0, 1});
+    layout.adapter.notifyPageRangeInserted(0, 2);
+    assertTrue(layout.view.isLayoutRequested());
+    layout.layout();
+    layout.assertPages();
+  }
+
+  @Test
+  public void testPageDiff() {
+    GalleryLayout layout = new GalleryLayout(RuntimeEnvironment.application);
+    int[] oldData = {0, 1, 2, 3, 4, 5, 6};
+    layout.set(oldData);
+    layout.layout();
+    layout.assertPages();
+
+    int[] newData = {7, 0, 2, 3, 8, 9, 5, 6, 10};
+    PageDiff.Result result = PageDiff.calculate(new PageDiff.Callback() {
+      @Override
+      public int getOldPageCount() {
+        return oldData.length;
+      }
+
+      @Override
+      public int getNewPageCount() {
+        return newData.length;
+      }
+
+      @Override
+      public boolean arePagesTheSame(int oldIndex, int newIndex) {
+        return oldData[oldIndex] == newData[newIndex];
+      }
+
+      @Override
+      public boolean arePageContentsTheSame(int oldIndex, int newIndex) {
+        return true;
+      }
+    });
+    layout.set(newData);
+    result.dispatchUpdatesTo(layout.adapter);
+    layout.layout();
+    layout.assertPages();
+  }
+
+  @Test
+  public void testRecycledPagePool() {
+    GalleryLayout layout = new GalleryLayout(RuntimeEnvironment.application);
+    RecycledPagePool pool = layout.view.getRecycledPagePool();
+    layout.set(new int[] {0, 1, 2, 3, 4});
+    layout.layout();
+    assertEquals(5, pool.getCreateCount());
+    assertEquals(0, pool.getReuseCount());
+
+    layout.set(new int[] {0, 1});
+    layout.adapter.notifyPageRangeRemoved(2, 3);
+    layout.layout();
+    assertEquals(3, pool.getRecycledPageCount(0));
+
+    layout.set(new int[] {0, 1, 2, 3, 4});
+    layout.adapter.notifyPageRangeInserted(2, 3);
+    layout.layout();
+    layout.assertPages();
+    assertEquals(5, pool.getCreateCount());
+    assertEquals(3, pool.getReuseCount());
+    assertEquals(0, pool.getRecycledPageCount(0));
+
+    pool.setMaxRecycledPages(0, 1);
+    layout.set(new int[] {0});
+    layout.adapter.notifyPageRangeRemoved(1, 4);
+    layout.layout();
+    assertEquals(1, pool.getRecycledPageCount(0));
+    assertEquals(3, pool.getDestroyCount());
+  }
+
+  @Test
+  public void testSharedRecycledPagePool() {
+    RecycledPagePool pool = new RecycledPagePool();
+    pool.setMaxRecycledPages(4);
+
+    GalleryLayout layout1 = new GalleryLayout(RuntimeEnvironment.application);
+    layout1.view.setRecycledPagePool(pool);
+    layout1.set(new int[] {0, 1, 2, 3, 4});
+    layout1.layout();
+    layout1.view.setAdapter(null);
+    assertEquals(4, pool.getRecycledPageCount());
+    assertEquals(1, pool.getDestroyCount());
+
+    GalleryLayout layout2 = new GalleryLayout(RuntimeEnvironment.application);
+    layout2.view.setRecycledPagePool(pool);
+    layout2.set(new int[] {5, 6, 7, 8, 9});
+    layout2.layout();
+    layout2.assertPages();
+    assertEquals(6, pool.getCreateCount());
+    assertEquals(4, pool.getReuseCount());
+  }
+
   private static class GalleryLayout {
 
     private GalleryView view;
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery;
+
+import static com.hippo.android.gallery.MemoryPressureCoordinator.TIER_NONE;
+import static com.hippo.android.gallery.MemoryPressureCoordinator.TIER_OFFSCREEN_PAGES;
+import static com.hippo.android.gallery.MemoryPressureCoordinator.TIER_PENDING_TILES;
+import static com.hippo.android.gallery.MemoryPressureCoordinator.TIER_RECYCLED_PAGES;
+import static com.hippo.android.gallery.MemoryPressureCoordinator.TIER_SAMPLE_LEVELS;
+import static org.junit.Assert.assertEquals;
+
+import android.content.ComponentCallbacks2;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MemoryPressureCoordinatorTest {
+
+  @Test
+  public void testGetTier() {
+    assertEquals(TIER_NONE, MemoryPressureCoordinator.getTier(0));
+    assertEquals(TIER_PENDING_TILES, MemoryPressureCoordinator.getTier(
+        ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+    assertEquals(TIER_SAMPLE_LEVELS, MemoryPressureCoordinator.getTier(
+        ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+    assertEquals(TIER_RECYCLED_PAGES, MemoryPressureCoordinator.getTier(
+        ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL));
+    assertEquals(TIER_OFFSCREEN_PAGES, MemoryPressureCoordinator.getTier(
+        ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN));
+    assertEquals(TIER_OFFSCREEN_PAGES, MemoryPressureCoordinator.getTier(
+        ComponentCallbacks2.TRIM_MEMORY_BACKGROUND));
+    assertEquals(TIER_OFFSCREEN_PAGES, MemoryPressureCoordinator.getTier(
+        ComponentCallbacks2.TRIM_MEMORY_COMPLETE));
+  }
+
+  @Test
+  public void testTrimOrder() {
+    List<String> calls = new ArrayList<>();
+    MemoryPressureCoordinator coordinator = new MemoryPressureCoordinator();
+    coordinator.register(tier -> calls.add("a" + tier));
+    coordinator.register(tier -> calls.add("b" + tier));
+
+    coordinator.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+    assertEquals(Arrays.asList("a1", "b1", "a2", "b2"), calls);
+
+    calls.clear();
+    coordinator.onLowMemory();
+    assertEquals(Arrays.asList("a1", "b1", "a2", "b2", "a3", "b3", "a4", "b4"), calls);
+  }
+
+  @Test
+  public void testNoTrim() {
+    List<Integer> tiers = new ArrayList<>();
+    MemoryPressureCoordinator coordinator = new MemoryPressureCoordinator();
+    coordinator.register(tiers::add);
+
+    coordinator.onTrimMemory(0);
+    assertEquals(Collections.emptyList(), tiers);
+  }
+
+  @Test
+  public void testUnregister() {
+    List<Integer> tiers = new ArrayList<>();
+    MemoryPressureCoordinator.Trimmable trimmable = tiers::add;
+    MemoryPressureCoordinator coordinator = new MemoryPressureCoordinator();
+    coordinator.register(trimmable);
+    coordinator.register(trimmable);
+
+    coordinator.trim(TIER_PENDING_TILES);
+    assertEquals(Collections.singletonList(TIER_PENDING_TILES), tiers);
+
+    tiers.clear();
+    coordinator.unregister(trimmable);
+    coordinator.trim(TIER_OFFSCREEN_PAGES);
+    assertEquals(Collections.emptyList(), tiers);
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.android.gallery;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.hippo.android.gallery.util.GalleryViewWrapper;
+import com.hippo.android.gallery.util.NoOp;
+import com.hippo.android.gallery.util.PageState;
+import java.util.LinkedList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class PagerLayoutManagerTest {
+
+  private static final int PAGE_INTERVAL = 10;
+  private static final int GALLERY_SIZE = 150;
+  private static final int HALF_SIZE = GALLERY_SIZE / 2;
+  private static final int PAGE_RANGE = GALLERY_SIZE + PAGE_INTERVAL;
+
+  private static GalleryViewWrapper newGallery(SpreadPagerLayout spreadPagerLayout, int pageCount) {
+    PagerLayoutManager plm = new PagerLayoutManager(RuntimeEnvironment.application);
+    plm.setPageInterval(PAGE_INTERVAL);
+    plm.setPagerLayout(spreadPagerLayout);
+
+    GalleryViewWrapper.Builder builder = new GalleryViewWrapper.Builder()
+        .size(GALLERY_SIZE)
+        .layoutManager(plm)
+        .transformer(new NoOp());
+    for (int i = 0; i < pageCount; i++) {
+      builder.add(GALLERY_SIZE, false);
+    }
+    return builder.build();
+  }
+
+  /*
+   * Returns the start of the spread of each page.
+   */
+  private static int[] getSpreadStarts(SpreadPagerLayout layout, int pageCount) {
+    layout.start(GALLERY_SIZE, GALLERY_SIZE, PAGE_INTERVAL);
+    int[] starts = new int[pageCount];
+    for (int i = 0; i < pageCount; i++) {
+      starts[i] = layout.getSpreadStart(i, pageCount);
+    }
+    return starts;
+  }
+
+  /*
+   * Returns the size of the spread of each spread start.
+   */
+  private static int[] getSpreadSizes(SpreadPagerLayout layout, int pageCount, int... starts) {
+    int[] sizes = new int[starts.length];
+    for (int i = 0; i < starts.length; i++) {
+      sizes[i] = layout.getSpreadSize(starts[i], pageCount);
+    }
+    return sizes;
+  }
+
+  @Test
+  public void testSpreads() {
+    SpreadPagerLayout layout = new SpreadPagerLayout(new HorizontalPagerLayout(), false);
+    assertArrayEquals(new int[]{0, 0, 2, 2, 4, 4}, getSpreadStarts(layout, 6));
+  }
+
+  @Test
+  public void testSpreadsOddPageCount() {
+    SpreadPagerLayout layout = new SpreadPagerLayout(new HorizontalPagerLayout(), false);
+    assertArrayEquals(new int[]{0, 0, 2, 2, 4}, getSpreadStarts(layout, 5));
+    assertArrayEquals(new int[]{2, 2, 1}, getSpreadSizes(layout, 5, 0, 2, 4));
+  }
+
+  @Test
+  public void testSpreadsCoverPage() {
+    SpreadPagerLayout layout = new SpreadPagerLayout(new HorizontalPagerLayout(), false);
+    layout.setCoverPage(true);
+    assertArrayEquals(new int[]{0, 1, 1, 3, 3}, getSpreadStarts(layout, 5));
+    assertArrayEquals(new int[]{1, 2, 2}, getSpreadSizes(layout, 5, 0, 1, 3));
+
+    assertArrayEquals(new int[]{0, 1, 1, 3}, getSpreadStarts(layout, 4));
+  }
+
+  @Test
+  public void testSpreadsWidePages() {
+    SpreadPagerLayout layout = new SpreadPagerLayout(new HorizontalPagerLayout(), false);
+    layout.setWidePageChecker(index -> index == 2);
+    assertArrayEquals(new int[]{0, 0, 2, 3, 3, 5}, getSpreadStarts(layout, 6));
+    assertArrayEquals(new int[]{2, 1, 2, 1}, getSpreadSizes(layout, 6, 0, 2, 3, 5));
+
+    // A wide page breaks the spread before it
+    layout.setWidePageChecker(index -> index == 1);
+    assertArrayEquals(new int[]{0, 1, 2, 2, 4, 4}, getSpreadStarts(layout, 6));
+  }
+
+  @Test
+  public void testLayoutSpreads() {
+    GalleryViewWrapper gallery = newGallery(
+        new SpreadPagerLayout(new HorizontalPagerLayout(), false), 6);
+    PagerLayoutManager plm = (PagerLayoutManager) gallery.getLayoutManager();
+    plm.setSelectedIndex(2);
+    gallery.layout();
+
+    List<PageState> states = new LinkedList<>();
+    states.add(gallery.newPageState(0, -PAGE_RANGE, 0, HALF_SIZE - PAGE_RANGE, GALLERY_SIZE));
+    states.add(gallery.newPageState(1, HALF_SIZE - PAGE_RANGE, 0, -PAGE_INTERVAL, GALLERY_SIZE));
+    states.add(gallery.newPageState(2, 0, 0, HALF_SIZE, GALLERY_SIZE));
+    states.add(gallery.newPageState(3, HALF_SIZE, 0, GALLERY_SIZE, GALLERY_SIZE));
+    states.add(gallery.newPageState(4, PAGE_RANGE, 0, PAGE_RANGE + HALF_SIZE, GALLERY_SIZE));
+    states.add(gallery.newPageState(5, PAGE_RANGE + HALF_SIZE, 0, PAGE_RANGE + GALLERY_SIZE, GALLERY_SIZE));
+    gallery.assertPages(states);
+  }
+
+  @Test
+  public void testLayoutSpreadsRightToLeft() {
+    GalleryViewWrapper gallery = newGallery(
+        new SpreadPagerLayout(new HorizontalPagerLayout(), true), 4);
+    gallery.layout();
+
+    List<PageState> states = new LinkedList<>();
+    states.add(gallery.newPageState(0, HALF_SIZE, 0, GALLERY_SIZE, GALLERY_SIZE));
+    states.add(gallery.newPageState(1, 0, 0, HALF_SIZE, GALLERY_SIZE));
+    states.add(gallery.newPageState(2, PAGE_RANGE + HALF_SIZE, 0, PAGE_RANGE + GALLERY_SIZE, GALLERY_SIZE));
+    states.add(gallery.newPageState(3, PAGE_RANGE, 0, PAGE_RANGE + HALF_SIZE, GALLERY_SIZE));
+    gallery.assertPages(states);
+  }
+
+  @Test
+  public void testSnapToSpreadStart() {
+    SpreadPagerLayout layout = new SpreadPagerLayout(new HorizontalPagerLayout(), false);
+    layout.setCoverPage(true);
+    GalleryViewWrapper gallery = newGallery(layout, 5);
+    PagerLayoutManager plm = (PagerLayoutManager) gallery.getLayoutManager();
+
+    // The second page of the spread
+    plm.setSelectedIndex(2);
+    gallery.layout();
+    assertEquals(1, plm.getSelectedIndex());
+
+    List<PageState> states = new LinkedList<>();
+    states.add(gallery.newPageState(0, -PAGE_RANGE, 0, -PAGE_INTERVAL, GALLERY_SIZE));
+    states.add(gallery.newPageState(1, 0, 0, HALF_SIZE, GALLERY_SIZE));
+    states.add(gallery.newPageState(2, HALF_SIZE, 0, GALLERY_SIZE, GALLERY_SIZE));
+    states.add(gallery.newPageState(3, PAGE_RANGE, 0, PAGE_RANGE + HALF_SIZE, GALLERY_SIZE));
+    states.add(gallery.newPageState(4, PAGE_RANGE + HALF_SIZE, 0, PAGE_RANGE + GALLERY_SIZE, GALLERY_SIZE));
+    gallery.assertPages(states);
+
+    // The last page
+    plm.setSelectedIndex(4);
+    gallery.layout();
+    assertEquals(3, plm.getSelectedIndex());
+  }
+
+  @Test
+  public void testTurnBySpread() {
+    SpreadPagerLayout layout = new SpreadPagerLayout(new HorizontalPagerLayout(), false);
+    layout.setWidePageChecker(index -> index == 2);
+    GalleryViewWrapper gallery = newGallery(layout, 6);
+    PagerLayoutManager plm = (PagerLayoutManager) gallery.getLayoutManager();
+    gallery.layout();
+    assertEquals(0, plm.getSelectedIndex());
+
+    // Spreads are {0, 1}, {2}, {3, 4}, {5}
+    gallery.scroll(-PAGE_RANGE, 0);
+    assertEquals(2, plm.getSelectedIndex());
+
+    List<PageState> states = new LinkedList<>();
+    states.add(gallery.newPageState(0, -PAGE_RANGE, 0, HALF_SIZE - PAGE_RANGE, GALLERY_SIZE));
+    states.add(gallery.newPageState(1, HALF_SIZE - PAGE_RANGE, 0, -PAGE_INTERVAL, GALLERY_SIZE));
+    states.add(gallery.newPageState(2, 0, 0, GALLERY_SIZE, GALLERY_SIZE));
+    states.add(gallery.newPageState(3, PAGE_RANGE, 0, PAGE_RANGE + HALF_SIZE, GALLERY_SIZE));
+    states.add(gallery.newPageState(4, PAGE_RANGE + HALF_SIZE, 0, PAGE_RANGE + GALLERY_SIZE, GALLERY_SIZE));
+    gallery.assertPages(states);
+
+    gallery.scroll(-PAGE_RANGE, 0);
+    assertEquals(3, plm.getSelectedIndex());
+    gallery.scroll(-PAGE_RANGE, 0);
+    assertEquals(5, plm.getSelectedIndex());
+
+    // No more spread
+    gallery.scroll(-PAGE_RANGE, 0);
+    assertEquals(5, plm.getSelectedIndex());
+
+    gallery.scroll(PAGE_RANGE, 0);
+    assertEquals(3, plm.getSelectedIndex());
+    gallery.scroll(PAGE_RANGE, 0);
+    assertEquals(2, plm.getSelectedIndex());
+    gallery.scroll(PAGE_RANGE, 0);
+    assertEquals(0, plm.getSelectedIndex());
+  }
+}
@@ -20,6 +20,8 @@ package com.hippo.android.gallery;
  * Created by Hippo on 2017/11/28.
  */
 
+import static org.junit.Assert.assertEquals;
+
 import com.hippo.android.gallery.util.AxisSwap;
 import com.hippo.android.gallery.util.GalleryViewWrapper;
 import com.hippo.android.gallery.util.HorizontalFlip;
@@ -28,8 +30,10 @@ import com.hippo.android.gallery.util.PageState;
 import com.hippo.android.gallery.util.Transformer;
 import com.hippo.android.gallery.util.TransformerChain;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.ParameterizedRobolectricTestRunner;
@@ -276,4 +280,49 @@ public class ScrollLayoutManagerTest {
     states.add(gallery.newPageState(4, -25, 210, 200, 285));
     gallery.assertPages(states);
   }
+
+  @Test
+  public void testOffscreenPages() {
+    GalleryViewWrapper.Builder builder = newBuilder();
+    for (int i = 0; i < 20; i++) {
+      builder.add(PAGE_SIZE, false);
+    }
+    GalleryViewWrapper gallery = builder.build();
+    ScrollLayoutManager slm = (ScrollLayoutManager) gallery.getLayoutManager();
+    slm.setOffscreenPageLimit(2, 1);
+    slm.setAnchor(8, 0);
+    gallery.layout();
+    assertOffscreenPages(gallery, 2, 1);
+
+    // Read forward
+    gallery.scroll(0, -100);
+    assertOffscreenPages(gallery, 2, 1);
+
+    // Read backward, the pages ahead are the previous pages
+    gallery.scroll(0, 200);
+    assertOffscreenPages(gallery, 1, 2);
+  }
+
+  private static void assertOffscreenPages(GalleryViewWrapper gallery, int next, int previous) {
+    int first = Integer.MAX_VALUE;
+    int last = Integer.MIN_VALUE;
+    Set<Integer> actual = new HashSet<>();
+    for (GalleryPage page : gallery.getGalleryView().getPages()) {
+      if (page.isOffscreen()) {
+        actual.add(page.getIndex());
+      } else {
+        first = Math.min(first, page.getIndex());
+        last = Math.max(last, page.getIndex());
+      }
+    }
+
+    Set<Integer> expected = new HashSet<>();
+    for (int i = 1; i <= next; i++) {
+      expected.add(last + i);
+    }
+    for (int i = 1; i <= previous; i++) {
+      expected.add(first - i);
+    }
+    assertEquals(expected, actual);
+  }
 }
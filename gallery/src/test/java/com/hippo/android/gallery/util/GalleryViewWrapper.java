@@ -58,6 +58,10 @@ public final class GalleryViewWrapper {
     transformer.setUp(size, size);
   }
 
+  public GalleryView getGalleryView() {
+    return galleryView;
+  }
+
   public GalleryLayoutManager getLayoutManager() {
     return layoutManager;
   }
@@ -102,6 +106,7 @@ public final class GalleryViewWrapper {
   public void assertPages(List<PageState> expected, String message) {
     List<PageState> actual = new ArrayList<>(galleryView.getPages())
         .stream()
+        .filter(it -> !it.isOffscreen())
         .sorted((o1, o2) -> o1.getIndex() - o2.getIndex())
         .map(it -> {
           View view = it.view;
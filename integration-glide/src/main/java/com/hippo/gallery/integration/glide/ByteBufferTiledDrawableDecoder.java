@@ -20,6 +20,7 @@ package com.hippo.gallery.integration.glide;
  * Created by Hippo on 2018/2/1.
  */
 
+import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -46,13 +47,47 @@ public class ByteBufferTiledDrawableDecoder implements ResourceDecoder<ByteBuffe
   private static final int MARK_POSITION = 10 * 1024 * 1024;
 
   private ImageRegionDecoderFactory factory;
+  private PreviewStrategy previewStrategy;
+  private TilingPolicy tilingPolicy;
   private Executor executor;
 
+  /**
+   * Creates a ByteBufferTiledDrawableDecoder
+   * which generates previews with {@link PreviewStrategies#AUTO}
+   * and tiles images with {@link TilingPolicies#TEXTURE_SIZE}.
+   */
   public ByteBufferTiledDrawableDecoder(
       @NonNull ImageRegionDecoderFactory factory,
       @NonNull Executor executor
+  ) {
+    this(factory, PreviewStrategies.AUTO, executor);
+  }
+
+  /**
+   * Creates a ByteBufferTiledDrawableDecoder
+   * which tiles images with {@link TilingPolicies#TEXTURE_SIZE}.
+   */
+  public ByteBufferTiledDrawableDecoder(
+      @NonNull ImageRegionDecoderFactory factory,
+      @NonNull PreviewStrategy previewStrategy,
+      @NonNull Executor executor
+  ) {
+    this(factory, previewStrategy, TilingPolicies.TEXTURE_SIZE, executor);
+  }
+
+  /**
+   * Creates a ByteBufferTiledDrawableDecoder
+   * which only decodes {@link TilingPolicy#DECODE_TILED} images.
+   */
+  public ByteBufferTiledDrawableDecoder(
+      @NonNull ImageRegionDecoderFactory factory,
+      @NonNull PreviewStrategy previewStrategy,
+      @NonNull TilingPolicy tilingPolicy,
+      @NonNull Executor executor
   ) {
     this.factory = factory;
+    this.previewStrategy = previewStrategy;
+    this.tilingPolicy = tilingPolicy;
     this.executor = executor;
   }
 
@@ -65,6 +100,9 @@ public class ByteBufferTiledDrawableDecoder implements ResourceDecoder<ByteBuffe
   @Override
   public Resource<TiledDrawable> decode(@NonNull ByteBuffer source, int width, int height,
       @NonNull Options options) throws IOException {
+    // The decoder may consume the stream, keep another one for the preview
+    ByteBuffer previewSource = source.duplicate();
+
     InputStream is = ByteBufferUtil.toStream(source);
     if (!needToBeTiled(is)) return null;
 
@@ -72,7 +110,10 @@ public class ByteBufferTiledDrawableDecoder implements ResourceDecoder<ByteBuffe
     if (decoder == null) return null;
 
     try {
-      TiledDrawableResource resource = TiledDrawableResource.create(decoder, executor);
+      int sample = TiledDrawable.getPreviewSample(decoder);
+      Bitmap preview = previewStrategy.generatePreview(
+          ByteBufferUtil.toStream(previewSource), decoder, sample);
+      TiledDrawableResource resource = TiledDrawableResource.create(decoder, preview, executor);
       if (resource != null) {
         decoder = null;
       }
@@ -92,8 +133,8 @@ public class ByteBufferTiledDrawableDecoder implements ResourceDecoder<ByteBuffe
       options.inJustDecodeBounds = true;
       BitmapFactory.decodeStream(is, null, options);
 
-      int maxTextureSize = TiledDrawable.getMaxTextureSize();
-      return options.outWidth > maxTextureSize || options.outHeight > maxTextureSize;
+      return tilingPolicy.decide(options.outWidth, options.outHeight)
+          == TilingPolicy.DECODE_TILED;
     } finally {
       is.reset();
     }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.gallery.integration.glide;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.util.DisplayMetrics;
+import com.hippo.android.gallery.drawable.TiledDrawable;
+
+/**
+ * MemoryTilingPolicy decides by the memory class of the app and the display size.
+ *
+ * Images larger than {@link TiledDrawable#getMaxTextureSize()} are always tiled.
+ * Images are decoded in full if they fit the memory budget of one page,
+ * and they aren't much larger than the display. Images much larger than the display
+ * are sampled to about twice of the display size if it fits the budget.
+ * The others are tiled.
+ */
+public class MemoryTilingPolicy implements TilingPolicy {
+
+  // Several pages are resident, each decoded image takes at most 1/16 of the memory class
+  private static final int MEMORY_FRACTION = 16;
+  // Full resolution is useful until images are scaled to twice of the display size
+  private static final int DETAIL_SCALE = 2;
+  private static final int BYTES_PER_PIXEL = 4;
+
+  // The max count of pixels in the memory budget
+  private final long budgetPixels;
+  // The max count of pixels which could be seen
+  private final long detailPixels;
+
+  /**
+   * Creates a MemoryTilingPolicy with the display size and the memory class of the context.
+   */
+  public MemoryTilingPolicy(@NonNull Context context) {
+    this(context.getResources().getDisplayMetrics(),
+        ((ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE)).getMemoryClass());
+  }
+
+  private MemoryTilingPolicy(DisplayMetrics metrics, int memoryClass) {
+    this(metrics.widthPixels, metrics.heightPixels, memoryClass);
+  }
+
+  /**
+   * Creates a MemoryTilingPolicy.
+   *
+   * @param displayWidth the width of the display in pixels
+   * @param displayHeight the height of the display in pixels
+   * @param memoryClass the memory class in megabytes,
+   *                    see {@link ActivityManager#getMemoryClass()}
+   */
+  public MemoryTilingPolicy(int displayWidth, int displayHeight, int memoryClass) {
+    budgetPixels = (long) memoryClass * 1024 * 1024 / MEMORY_FRACTION / BYTES_PER_PIXEL;
+    detailPixels = (long) displayWidth * displayHeight * DETAIL_SCALE * DETAIL_SCALE;
+  }
+
+  @Override
+  public int decide(int width, int height) {
+    if (width <= 0 || height <= 0) {
+      // Unknown size, let the next decoder handle it
+      return DECODE_FULL;
+    }
+
+    int maxTextureSize = TiledDrawable.getMaxTextureSize();
+    if (width > maxTextureSize || height > maxTextureSize) {
+      return DECODE_TILED;
+    }
+
+    int sample = getSample(width, height);
+    long pixels = ((long) width / sample) * ((long) height / sample);
+    if (pixels > budgetPixels) {
+      return DECODE_TILED;
+    } else {
+      return sample == 1 ? DECODE_FULL : DECODE_SAMPLED;
+    }
+  }
+
+  @Override
+  public int getSample(int width, int height) {
+    int sample = 1;
+    while (((long) width / sample) * ((long) height / sample) > detailPixels) {
+      sample *= 2;
+    }
+    return sample;
+  }
+}
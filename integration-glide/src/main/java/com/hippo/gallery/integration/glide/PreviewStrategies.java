@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.gallery.integration.glide;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import com.hippo.android.gallery.drawable.ImageRegionDecoder;
+import com.hippo.android.gallery.drawable.TiledDrawable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Built-in {@link PreviewStrategy PreviewStrategies}.
+ */
+public final class PreviewStrategies {
+  private PreviewStrategies() {}
+
+  private static final String LOG_TAG = "PreviewStrategies";
+
+  private static final int HEADER_SIZE = 12;
+
+  /**
+   * Decodes the whole image region with ImageRegionDecoder.
+   * It works for all formats, but it's slow, and it holds the decoder during decoding.
+   */
+  public static final PreviewStrategy REGION_DECODE = new PreviewStrategy() {
+    @Nullable
+    @Override
+    public Bitmap generatePreview(@NonNull InputStream is, @NonNull ImageRegionDecoder decoder,
+        int sample) {
+      return TiledDrawable.generatePreview(decoder);
+    }
+  };
+
+  /**
+   * Decodes the whole image with {@link BitmapFactory} and {@code inSampleSize}.
+   * JPEG and WebP decoders scale while decoding, it's much faster than region decoding.
+   */
+  public static final PreviewStrategy SAMPLED_DECODE = new PreviewStrategy() {
+    @Nullable
+    @Override
+    public Bitmap generatePreview(@NonNull InputStream is, @NonNull ImageRegionDecoder decoder,
+        int sample) {
+      BitmapFactory.Options options = new BitmapFactory.Options();
+      options.inSampleSize = sample;
+      options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+      try {
+        return BitmapFactory.decodeStream(is, null, options);
+      } catch (OutOfMemoryError e) {
+        Log.e(LOG_TAG, "Out of memory when decoding preview with sample " + sample, e);
+        return null;
+      }
+    }
+  };
+
+  /**
+   * Uses the thumbnail embedded in EXIF, if it's large enough for the preview.
+   * It only works for JPEG on Nougat and above.
+   * Returns {@code null} if the thumbnail is not available.
+   *
+   * EXIF thumbnails are usually about 160x120, so it only succeeds for small
+   * max texture sizes or huge samples. It isn't used by {@link #AUTO}.
+   */
+  public static final PreviewStrategy EXIF_THUMBNAIL = new PreviewStrategy() {
+    @Nullable
+    @Override
+    public Bitmap generatePreview(@NonNull InputStream is, @NonNull ImageRegionDecoder decoder,
+        int sample) throws IOException {
+      if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+        return null;
+      }
+
+      ExifInterface exif = new ExifInterface(is);
+      if (!exif.hasThumbnail()) {
+        return null;
+      }
+
+      // Check the thumbnail size before decoding it
+      byte[] data = exif.getThumbnail();
+      BitmapFactory.Options options = new BitmapFactory.Options();
+      options.inJustDecodeBounds = true;
+      BitmapFactory.decodeByteArray(data, 0, data.length, options);
+      if (options.outWidth * sample < decoder.getWidth()
+          || options.outHeight * sample < decoder.getHeight()) {
+        return null;
+      }
+
+      options.inJustDecodeBounds = false;
+      options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+      return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+  };
+
+  /**
+   * Picks the fastest strategy by image format.
+   * <ul>
+   *   <li>JPEG, PNG and WebP: {@link #SAMPLED_DECODE}</li>
+   *   <li>Others: {@link #REGION_DECODE}</li>
+   * </ul>
+   * It falls back to {@link #REGION_DECODE} if the picked strategy fails.
+   */
+  public static final PreviewStrategy AUTO = new PreviewStrategy() {
+    @Nullable
+    @Override
+    public Bitmap generatePreview(@NonNull InputStream is, @NonNull ImageRegionDecoder decoder,
+        int sample) throws IOException {
+      byte[] header = new byte[HEADER_SIZE];
+      is.mark(HEADER_SIZE);
+      int length = readFully(is, header);
+      is.reset();
+
+      Bitmap preview = null;
+      if (isJpeg(header, length) || isPng(header, length) || isWebp(header, length)) {
+        preview = SAMPLED_DECODE.generatePreview(is, decoder, sample);
+      }
+
+      if (preview == null) {
+        preview = REGION_DECODE.generatePreview(is, decoder, sample);
+      }
+      return preview;
+    }
+  };
+
+  private static int readFully(InputStream is, byte[] buffer) throws IOException {
+    int length = 0;
+    while (length < buffer.length) {
+      int read = is.read(buffer, length, buffer.length - length);
+      if (read == -1) {
+        break;
+      }
+      length += read;
+    }
+    return length;
+  }
+
+  private static boolean isJpeg(byte[] header, int length) {
+    return length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8
+        && (header[2] & 0xFF) == 0xFF;
+  }
+
+  private static boolean isPng(byte[] header, int length) {
+    return length >= 4 && (header[0] & 0xFF) == 0x89 && header[1] == 'P'
+        && header[2] == 'N' && header[3] == 'G';
+  }
+
+  private static boolean isWebp(byte[] header, int length) {
+    return length >= 12 && header[0] == 'R' && header[1] == 'I' && header[2] == 'F'
+        && header[3] == 'F' && header[8] == 'W' && header[9] == 'E' && header[10] == 'B'
+        && header[11] == 'P';
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.gallery.integration.glide;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import com.hippo.android.gallery.drawable.ImageRegionDecoder;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * PreviewStrategy generates the preview bitmap of a TiledDrawable.
+ *
+ * @see PreviewStrategies
+ */
+public interface PreviewStrategy {
+
+  /**
+   * Generates the preview bitmap. The preview could be in any size, but it should be
+   * about the size of the image divided by the sample.
+   *
+   * @param is the stream of the image, from the beginning of the image,
+   *           it supports {@link InputStream#mark(int)}
+   * @param decoder the decoder of the image
+   * @param sample the expected sample of the preview, it's power of 2
+   */
+  @Nullable
+  Bitmap generatePreview(@NonNull InputStream is, @NonNull ImageRegionDecoder decoder, int sample)
+      throws IOException;
+}
@@ -48,7 +48,19 @@ public class TiledDrawableResource implements Resource<TiledDrawable>, Initializ
     if (decoder == null) return null;
 
     Bitmap preview = TiledDrawable.generatePreview(decoder);
-    if (preview == null) return null;
+    return create(decoder, preview, executor);
+  }
+
+  /**
+   * Creates a TiledDrawableResource with the preview generated by a {@link PreviewStrategy}.
+   */
+  @Nullable
+  public static TiledDrawableResource create(
+      ImageRegionDecoder decoder,
+      Bitmap preview,
+      Executor executor
+  ) {
+    if (decoder == null || preview == null) return null;
 
     return new TiledDrawableResource(decoder, preview, executor);
   }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.gallery.integration.glide;
+
+import android.support.annotation.NonNull;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
+import com.hippo.android.gallery.drawable.TiledDrawable;
+
+/**
+ * Built-in {@link TilingPolicy TilingPolicies}.
+ *
+ * @see MemoryTilingPolicy
+ */
+public final class TilingPolicies {
+  private TilingPolicies() {}
+
+  /**
+   * Tiles images larger than {@link TiledDrawable#getMaxTextureSize()},
+   * decodes the others in full.
+   */
+  public static final TilingPolicy TEXTURE_SIZE = new TilingPolicy() {
+    @Override
+    public int decide(int width, int height) {
+      int maxTextureSize = TiledDrawable.getMaxTextureSize();
+      return width > maxTextureSize || height > maxTextureSize ? DECODE_TILED : DECODE_FULL;
+    }
+
+    @Override
+    public int getSample(int width, int height) {
+      return 1;
+    }
+  };
+
+  /**
+   * Returns a DownsampleStrategy which decodes {@link TilingPolicy#DECODE_SAMPLED} images
+   * with the sample of the TilingPolicy, and the others in full.
+   * The requested size is ignored.
+   */
+  @NonNull
+  public static DownsampleStrategy asDownsampleStrategy(@NonNull final TilingPolicy policy) {
+    return new DownsampleStrategy() {
+      @Override
+      public float getScaleFactor(int sourceWidth, int sourceHeight,
+          int requestedWidth, int requestedHeight) {
+        if (policy.decide(sourceWidth, sourceHeight) == TilingPolicy.DECODE_SAMPLED) {
+          return 1.0f / policy.getSample(sourceWidth, sourceHeight);
+        } else {
+          return 1.0f;
+        }
+      }
+
+      @Override
+      public SampleSizeRounding getSampleSizeRounding(int sourceWidth, int sourceHeight,
+          int requestedWidth, int requestedHeight) {
+        return SampleSizeRounding.MEMORY;
+      }
+    };
+  }
+}
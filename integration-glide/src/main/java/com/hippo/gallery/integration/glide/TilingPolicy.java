@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 Hippo Seven
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hippo.gallery.integration.glide;
+
+import android.support.annotation.IntDef;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+/**
+ * TilingPolicy decides how to decode an image, in full, sampled or tiled.
+ *
+ * {@link ByteBufferTiledDrawableDecoder} only handles {@link #DECODE_TILED} images.
+ * The others are left to the next decoder. Use
+ * {@link TilingPolicies#asDownsampleStrategy(TilingPolicy)} to make it decode
+ * {@link #DECODE_SAMPLED} images with the sample.
+ *
+ * @see TilingPolicies
+ */
+public interface TilingPolicy {
+
+  @IntDef({DECODE_FULL, DECODE_SAMPLED, DECODE_TILED})
+  @Retention(RetentionPolicy.SOURCE)
+  @interface Decision {}
+
+  /**
+   * Decodes the whole image at full resolution.
+   */
+  int DECODE_FULL = 0;
+  /**
+   * Decodes the whole image with the sample from {@link #getSample(int, int)}.
+   */
+  int DECODE_SAMPLED = 1;
+  /**
+   * Decodes the image as a {@link com.hippo.android.gallery.drawable.TiledDrawable}.
+   */
+  int DECODE_TILED = 2;
+
+  /**
+   * Decides how to decode an image in the size.
+   */
+  @Decision
+  int decide(int width, int height);
+
+  /**
+   * Returns the sample to decode an image in the size if it's {@link #DECODE_SAMPLED}.
+   * It's power of 2.
+   */
+  int getSample(int width, int height);
+}